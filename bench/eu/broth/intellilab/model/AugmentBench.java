@@ -0,0 +1,63 @@
+package eu.broth.intellilab.model;
+
+import com.intellij.tasks.LocalTask;
+import com.intellij.tasks.impl.LocalTaskImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attaches local tasks to 10,000 issues, like every refresh does for the issues linked to a task, and reports per
+ * issue. The previous implementation looked up the fields by reflection for every issue, which is measured for
+ * comparison. Needs the tasks plugin on the class path.
+ *
+ * @version 17.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(AugmentBench.ISSUES)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AugmentBench {
+
+	static final int ISSUES = 10000;
+
+	private List<GitlabIssue> issues;
+	private LocalTask task;
+
+	@Setup
+	public void setUp() {
+		issues = ParserBench.createIssues(ISSUES);
+		task = new LocalTaskImpl("1", "Task");
+	}
+
+	@Benchmark
+	public void accessors() {
+		for (GitlabIssue issue : issues) {
+			issue.attachTask(task);
+		}
+	}
+
+	@Benchmark
+	public void reflection() {
+		for (GitlabIssue issue : issues) {
+			setValue(issue, "task", task);
+			setValue(issue, "state", (task.isActive() ? GitlabIssue.State.ACTIVE : GitlabIssue.State.OPEN)
+					.toString());
+		}
+	}
+
+	private static void setValue(GitlabIssue issue, String fieldName, Object value) {
+		try {
+			Field field = issue.getClass().getDeclaredField(fieldName);
+			field.setAccessible(true);
+			field.set(issue, value);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
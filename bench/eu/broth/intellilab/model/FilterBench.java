@@ -0,0 +1,77 @@
+package eu.broth.intellilab.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Filters 10,000 issues while the user types, i.e. searches the index and tests every row like the issues table
+ * does, reported per row. For comparison, the same terms are looked up by scanning the texts of all issues.
+ *
+ * @version 17.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(FilterBench.ISSUES)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilterBench {
+
+	static final int ISSUES = 10000;
+
+	@Param({"b", "bu", "bug", "issue 12", "reproduce 4711", "#99"})
+	public String query;
+
+	private List<GitlabIssue> rows;
+	private IssueIndex index;
+
+	@Setup
+	public void setUp() {
+		IssueStore store = new IssueStore();
+		ParserBench.createIssues(ISSUES).forEach(store::merge);
+		index = new IssueIndex();
+		index.apply(store.publish(issue -> true));
+		rows = store.getSnapshot().issues;
+	}
+
+	@Benchmark
+	public int index() {
+		return count(rows, index.search(query));
+	}
+
+	@Benchmark
+	public int scan() {
+		return count(rows, scan(query));
+	}
+
+	private static int count(List<GitlabIssue> rows, Predicate<GitlabIssue> filter) {
+		int count = 0;
+		for (GitlabIssue issue : rows) {
+			if (filter.test(issue)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static Predicate<GitlabIssue> scan(String query) {
+		String[] terms = query.toLowerCase(Locale.ROOT).split("\\s+");
+		return issue -> {
+			for (String term : terms) {
+				if (!contains(issue.getLocalIdText(), term) && !contains(issue.getSummary(), term) &&
+						!contains(issue.getDescription(), term) && !contains(issue.getCompleteLabelsText(), term))
+					return false;
+			}
+			return true;
+		};
+	}
+
+	private static boolean contains(String text, String term) {
+		return text != null && text.toLowerCase(Locale.ROOT).contains(term);
+	}
+}
@@ -0,0 +1,61 @@
+package eu.broth.intellilab.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes 10,000 issues and indexes them for the search, first all at once like a complete load (reported per
+ * issue), then refreshes in which 1% of the issues have changed (reported per changed issue). A refresh includes
+ * parsing the changed issues into the known ones.
+ *
+ * @version 17.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexBench {
+
+	static final int ISSUES = 10000;
+	static final int CHANGED = ISSUES / 100;
+
+	private IssueChangeSet all;
+	private EntityManager em;
+	private IssueStore store;
+	private IssueIndex index;
+	// the changed issues alternate between two versions, so every refresh changes their texts
+	private String original;
+	private String changed;
+	private int refreshes;
+
+	@Setup
+	public void setUp() {
+		em = new EntityManager();
+		store = new IssueStore();
+		ParserBench.parseIssues(em, ParserBench.createPage(ISSUES)).forEach(store::merge);
+		all = store.publish(issue -> true);
+		index = new IssueIndex();
+		index.apply(all);
+		original = ParserBench.createPage(CHANGED);
+		changed = original.replace("does not work as expected", "crashes right after startup");
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ISSUES)
+	public IssueIndex indexAll() {
+		IssueIndex index = new IssueIndex();
+		index.apply(all);
+		return index;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CHANGED)
+	public void refresh() {
+		String page = refreshes++ % 2 == 0 ? changed : original;
+		ParserBench.parseIssues(em, page).forEach(store::merge);
+		index.apply(store.publish(issue -> true));
+	}
+}
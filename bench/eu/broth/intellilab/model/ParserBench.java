@@ -0,0 +1,106 @@
+package eu.broth.intellilab.model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Parses a page of 10,000 issues as returned by GitLab, reported per issue. The entity adapters read every issue in
+ * a single pass, either into new instances (first load) or merged into the instances already known (refresh). The
+ * deserializer they have replaced parses the same page for comparison, see {@link PreviousParser}.
+ * <p>
+ * The benchmarks of this source root run with JMH, e.g. <code>org.openjdk.jmh.Main ParserBench -prof gc</code> also
+ * shows the bytes allocated per operation.
+ *
+ * @version 17.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(ParserBench.ISSUES)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBench {
+
+	static final int ISSUES = 10000;
+	private static final int USERS = 50;
+
+	private String page;
+	private EntityManager known;
+
+	@Setup
+	public void setUp() {
+		page = createPage(ISSUES);
+		known = new EntityManager();
+		parse(known, page, issue -> {
+		});
+	}
+
+	@Benchmark
+	public void adapters(Blackhole blackhole) {
+		parse(new EntityManager(), page, blackhole::consume);
+	}
+
+	@Benchmark
+	public void adaptersKnownInstances(Blackhole blackhole) {
+		parse(known, page, blackhole::consume);
+	}
+
+	@Benchmark
+	public List<PreviousParser.Issue> previousDeserializer() {
+		return new PreviousParser().extractIssues(page);
+	}
+
+	private static void parse(EntityManager em, String json, Consumer<GitlabIssue> consumer) {
+		try {
+			em.streamIssues(new StringReader(json), consumer);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return issues as parsed from {@link #createPage(int)}
+	 */
+	public static List<GitlabIssue> createIssues(int count) {
+		return parseIssues(new EntityManager(), createPage(count));
+	}
+
+	static List<GitlabIssue> parseIssues(EntityManager em, String page) {
+		List<GitlabIssue> issues = new ArrayList<>();
+		parse(em, page, issues::add);
+		return issues;
+	}
+
+	public static String createPage(int issues) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = issues; i > 0; i--) {
+			if (i < issues) {
+				sb.append(',');
+			}
+			sb.append(String.format(Locale.ROOT, "{\"id\":%d,\"iid\":%d,\"project_id\":1,\"title\":\"Issue %d: " +
+							"something does not work as expected\",\"description\":\"Steps to reproduce the " +
+							"problem of issue %d, followed by a few more words.\",\"state\":\"%s\"," +
+							"\"created_at\":\"2014-04-01T10:00:00Z\",\"updated_at\":\"2014-04-%02dT10:00:00Z\"," +
+							"\"labels\":[%s],\"milestone\":{\"id\":3,\"title\":\"1.%d\"},\"assignee\":%s," +
+							"\"author\":%s}",
+					1000 + i, i, i, i, i % 3 == 0 ? "closed" : "opened", 1 + i % 28,
+					i % 4 == 0 ? "\"bug\",\"ui\"" : "\"feature\"", i % 5, user(i % USERS), user((i + 7) % USERS)));
+		}
+		return sb.append(']').toString();
+	}
+
+	private static String user(int id) {
+		return String.format(Locale.ROOT, "{\"id\":%d,\"username\":\"user%d\",\"name\":\"User %d\"," +
+				"\"state\":\"active\"}", id + 1, id, id);
+	}
+}
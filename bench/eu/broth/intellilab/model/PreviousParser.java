@@ -0,0 +1,140 @@
+package eu.broth.intellilab.model;
+
+import com.google.gson.*;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The way issues were parsed before the entity adapters, kept for comparison in {@link ParserBench}: every entity is
+ * read into a JSON tree, created from the tree by reflection and merged into the cached instance, which is looked up
+ * by class name and id. The entities only have the fields the issues had back then.
+ *
+ * @version 17.10.2026
+ */
+class PreviousParser {
+
+	private static final Type ISSUE_LIST = new TypeToken<List<Issue>>() {
+	}.getType();
+
+	private Gson gs;
+	private Map<String, Entity> entities;
+
+	private void reset() {
+		GsonBuilder builder = new GsonBuilder();
+		builder.registerTypeHierarchyAdapter(Entity.class, new CachingDeserializer(true));
+		gs = builder.create();
+		entities = new HashMap<>();
+	}
+
+	List<Issue> extractIssues(String json) {
+		reset();
+		return gs.fromJson(json, ISSUE_LIST);
+	}
+
+	private String toKey(final Entity entity) {
+		return entity.getClass().getSimpleName() + entity.id;
+	}
+
+
+	private class CachingDeserializer implements JsonDeserializer {
+
+		private final Gson tempGs;
+
+		private CachingDeserializer(boolean supportsNestedUsers) {
+			// required to cache GitLab users as well
+			GsonBuilder builder = new GsonBuilder();
+			if (supportsNestedUsers) {
+				builder.registerTypeHierarchyAdapter(User.class, new CachingDeserializer(false));
+			}
+			tempGs = builder.create();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Object deserialize(JsonElement jsonElement, Type type, JsonDeserializationContext jsonContext)
+				throws JsonParseException {
+			Entity tempEntity = tempGs.fromJson(jsonElement, type);
+			String key = toKey(tempEntity);
+			Entity entity = entities.get(key);
+			if (entity == null) {
+				entity = tempEntity;
+				entities.put(key, entity);
+			} else {
+				entity.merge(tempEntity);
+			}
+			return entity;
+		}
+	}
+
+
+	abstract static class Entity<E> {
+		protected int id;
+
+		abstract void merge(E other);
+	}
+
+	static class User extends Entity<User> {
+		private String username;
+		private String name;
+
+		@Override
+		void merge(User other) {
+			username = other.username;
+			name = other.name;
+		}
+	}
+
+	static class Issue extends Entity<Issue> {
+		private static final String BUG = "bug";
+
+		@SerializedName("iid")
+		private int localId;
+		private String state;
+		@SerializedName("title")
+		private String summary;
+		private String[] labels;
+		@SerializedName("assignee")
+		private User assignedTo;
+		@SerializedName("author")
+		private User createdBy;
+		private String description;
+		private boolean labelsCleaned;
+		private boolean bug;
+
+		boolean isBug() {
+			if (!labelsCleaned) {
+				labelsCleaned = true;
+				List<String> result = new LinkedList<>();
+				for (String label : labels) {
+					if (!BUG.equals(label)) {
+						result.add(label);
+					} else {
+						bug = true;
+					}
+				}
+				labels = result.toArray(new String[0]);
+			}
+			return bug;
+		}
+
+		@Override
+		void merge(Issue other) {
+			if (!"active".equals(state)) {
+				state = other.state;
+			}
+			summary = other.summary;
+			description = other.description;
+			labels = other.labels;
+			labelsCleaned = false;
+			bug = other.isBug();
+			assignedTo = other.assignedTo;
+			createdBy = other.createdBy;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package eu.broth.intellilab.ui;
+
+import eu.broth.intellilab.model.GitlabIssue;
+import eu.broth.intellilab.model.ParserBench;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders all cells of 10,000 issues the way the issues table does while scrolling, without showing anything, and
+ * reports per row. The bytes allocated per row should not exceed the ones of Swing's default renderer, which is
+ * measured for comparison. Needs the IDE's libraries on the class path, since the renderer uses its colors and icons.
+ *
+ * @version 17.10.2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(RendererBench.ROWS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class RendererBench {
+
+	static final int ROWS = 10000;
+	private static final int COLUMNS = 6;
+
+	@Param({"default", "issue"})
+	public String renderer;
+
+	private List<GitlabIssue> issues;
+	private JTable table;
+	private TableCellRenderer cellRenderer;
+
+	@Setup
+	public void setUp() {
+		issues = ParserBench.createIssues(ROWS);
+		table = new JTable();
+		cellRenderer = "issue".equals(renderer) ? new IssueRenderer() : new DefaultTableCellRenderer();
+	}
+
+	@Benchmark
+	public void render(Blackhole blackhole) {
+		for (int row = 0; row < ROWS; row++) {
+			GitlabIssue issue = issues.get(row);
+			for (int column = 0; column < COLUMNS; column++) {
+				blackhole.consume(cellRenderer.getTableCellRendererComponent(table, issue, row % 10 == 0, false,
+						row, column));
+			}
+		}
+	}
+}
@@ -10,7 +10,6 @@ import com.intellij.tasks.TaskManager;
 import eu.broth.intellilab.model.GitlabIssue;
 import org.jetbrains.annotations.Nullable;
 
-import java.lang.reflect.Field;
 import java.util.*;
 
 /**
@@ -26,6 +25,8 @@ import java.util.*;
 public class IntelliLab extends AbstractProjectComponent implements PersistentStateComponent<IntelliLab.LabStore> {
 
 	private LabStore store;
+	// reverse of the persisted issue task associations (task id to issue ids)
+	private final Map<String, Set<Integer>> linkedIssues = new HashMap<>();
 
 	private TaskManager manager;
 
@@ -40,32 +41,26 @@ public class IntelliLab extends AbstractProjectComponent implements PersistentSt
 		taskListener = new TaskListenerAdapter() {
 			@Override
 			public void taskActivated(LocalTask task) {
-				String taskId = task.getId();
-				store.issues.entrySet().stream().filter(entry -> taskId.equals(entry.getValue())).forEach(entry -> {
-					listeners.forEach(l -> l.taskChanged(entry.getKey(), GitlabIssue.State.ACTIVE));
-				});
+				for (Integer id : getLinkedIssues(task.getId())) {
+					listeners.forEach(l -> l.taskChanged(id, GitlabIssue.State.ACTIVE));
+				}
 			}
 
 			@Override
 			public void taskDeactivated(LocalTask task) {
-				String taskId = task.getId();
-				store.issues.entrySet().stream().filter(entry -> taskId.equals(entry.getValue())).forEach(entry -> {
-					listeners.forEach(l -> l.taskChanged(entry.getKey(), GitlabIssue.State.OPEN));
-				});
+				for (Integer id : getLinkedIssues(task.getId())) {
+					listeners.forEach(l -> l.taskChanged(id, GitlabIssue.State.OPEN));
+				}
 			}
 
 			@Override
 			public void taskRemoved(LocalTask task) {
-				String taskId = task.getId();
-				// create a copy of the entry set to avoid concurrent modification exception
-				Set<Map.Entry<Integer, String>> entries = new HashSet<>(store.issues.entrySet());
-				entries.stream().filter(entry -> taskId.equals(entry.getValue())).forEach(entry -> {
-					Integer id = entry.getKey();
+				for (Integer id : getLinkedIssues(task.getId())) {
 					listeners.forEach(l -> l.taskChanged(id, GitlabIssue.State.CLOSED));
 
 					// clear issue task association
-					store.issues.remove(id);
-				});
+					unlink(id);
+				}
 			}
 		};
 		manager.addTaskListener(taskListener);
@@ -78,8 +73,10 @@ public class IntelliLab extends AbstractProjectComponent implements PersistentSt
 	}
 
 	@Override
-	public void loadState(LabStore state) {
+	public synchronized void loadState(LabStore state) {
 		store = state;
+		linkedIssues.clear();
+		store.issues.forEach((issueId, taskId) -> linkedIssues.computeIfAbsent(taskId, id -> new HashSet<>()).add(issueId));
 	}
 
 	public void setServerUrl(String url) {
@@ -98,6 +95,70 @@ public class IntelliLab extends AbstractProjectComponent implements PersistentSt
 		return store.token;
 	}
 
+	/**
+	 * @return how many connections to the GitLab server are used at the same time at most
+	 */
+	public int getMaxConnectionsPerServer() {
+		return store.maxConnectionsPerServer;
+	}
+
+	public void setMaxConnectionsPerServer(int maxConnections) {
+		store.maxConnectionsPerServer = maxConnections;
+	}
+
+	/**
+	 * @return the time in minutes for which loaded project and group members are reused without asking the server
+	 */
+	public int getMembersCacheTtl() {
+		return store.membersCacheTtl;
+	}
+
+	/**
+	 * @return the time in minutes for which the issues of a query are only updated incrementally, before they are
+	 * loaded completely again
+	 */
+	public int getQueryCacheTtl() {
+		return store.queryCacheTtl;
+	}
+
+	/**
+	 * @return how many closed issues loaded on demand are kept in memory at most
+	 */
+	public int getClosedIssuesCacheSize() {
+		return store.closedIssuesCacheSize;
+	}
+
+	/**
+	 * @return the time in seconds after which shown issues are refreshed in the background at the earliest, 0 if
+	 * they should not be refreshed automatically
+	 */
+	public int getSyncInterval() {
+		return store.syncInterval;
+	}
+
+	/**
+	 * @return the port on which GitLab web hooks are received, 0 if they are not
+	 */
+	public int getWebhookPort() {
+		return store.webhookPort;
+	}
+
+	/**
+	 * @return the host name or address of the interface on which web hooks are received, the loopback interface
+	 * unless configured otherwise
+	 */
+	public String getWebhookAddress() {
+		return store.webhookAddress;
+	}
+
+	/**
+	 * @return the secret token which GitLab has to send along with web hook events (web hooks are not received
+	 * without one)
+	 */
+	public String getWebhookToken() {
+		return store.webhookToken;
+	}
+
 	public void setProject(String json) {
 		store.project = json;
 	}
@@ -111,10 +172,10 @@ public class IntelliLab extends AbstractProjectComponent implements PersistentSt
 		if (task == null) {
 			// create and associate task
 			task = manager.createLocalTask("#" + issue.getLocalId() + ": " + issue.getSummary());
-			setValue(issue, "task", task);
+			issue.setTask(task);
 
 			// persist task issue association
-			store.issues.put(issue.getId(), task.getId());
+			link(issue.getId(), task.getId());
 		}
 		manager.activateTask(task, true);
 	}
@@ -142,49 +203,131 @@ public class IntelliLab extends AbstractProjectComponent implements PersistentSt
 			}
 
 			// eliminate issue task association
-			setValue(issue, "task", null);
-			store.issues.remove(issue.getId());
+			issue.setTask(null);
+			unlink(issue.getId());
+		}
+	}
+
+	/**
+	 * Associates the issue with the given task again, e.g. since a change of the issue has not been accepted. A task
+	 * associated in the meantime is kept, but not associated anymore.
+	 */
+	public void restoreTask(GitlabIssue issue, @Nullable LocalTask task) {
+		issue.setTask(task);
+		if (task == null) {
+			unlink(issue.getId());
+		} else {
+			link(issue.getId(), task.getId());
 		}
 	}
 
-	public void clearAugmentations() {
+	/**
+	 * @return a copy of all issue task associations (issue id to task id)
+	 */
+	public synchronized Map<Integer, String> getTaskLinks() {
+		return new HashMap<>(store.issues);
+	}
+
+	/**
+	 * Re-establishes issue task associations which are not known anymore, e.g. from a local snapshot. Associations
+	 * whose task does not exist anymore are dropped during augmentation.
+	 */
+	public synchronized void restoreTaskLinks(Map<Integer, String> links) {
+		links.forEach((issueId, taskId) -> {
+			if (!store.issues.containsKey(issueId)) {
+				link(issueId, taskId);
+			}
+		});
+	}
+
+	/**
+	 * @return whether the issue is associated with a local task
+	 */
+	public synchronized boolean isLinked(int issueId) {
+		return store.issues.containsKey(issueId);
+	}
+
+	public synchronized void clearAugmentations() {
 		store.issues.clear();
+		linkedIssues.clear();
 	}
 
-	public void augmentIssue(GitlabIssue issue) {
-		String taskId = store.issues.get(issue.getId());
-		if (taskId != null) {
-			LocalTask task = manager.findTask(taskId);
-			setValue(issue, "task", task);
+	/**
+	 * Attaches the associated tasks to the issues. The tasks are looked up once for all issues. May be called from
+	 * several threads at the same time.
+	 */
+	public synchronized void augmentIssues(Collection<GitlabIssue> issues) {
+		if (store.issues.isEmpty())
+			return;
+		Map<String, LocalTask> tasks = null;
+		for (GitlabIssue issue : issues) {
+			String taskId = store.issues.get(issue.getId());
+			if (taskId == null)
+				continue;
+			if (tasks == null) {
+				tasks = new HashMap<>();
+				for (LocalTask task : manager.getLocalTasks()) {
+					tasks.put(task.getId(), task);
+				}
+			}
+			LocalTask task = tasks.get(taskId);
 			if (task == null) {
 				// task has been removed externally, so drop task issue association as well
-				store.issues.remove(issue.getId());
-				return;
+				issue.setTask(null);
+				unlink(issue.getId());
+			} else {
+				issue.attachTask(task);
 			}
-			GitlabIssue.State state = task.isActive() ? GitlabIssue.State.ACTIVE : GitlabIssue.State.OPEN;
-			setValue(issue, "state", state.toString());
 		}
 	}
 
-	public void onTaskStateChanged(TaskStateListener listener) {
-		listeners.add(listener);
+	private synchronized void link(int issueId, String taskId) {
+		String previous = store.issues.put(issueId, taskId);
+		if (previous != null) {
+			removeLinkedIssue(previous, issueId);
+		}
+		linkedIssues.computeIfAbsent(taskId, id -> new HashSet<>()).add(issueId);
+	}
+
+	private synchronized void unlink(int issueId) {
+		String taskId = store.issues.remove(issueId);
+		if (taskId != null) {
+			removeLinkedIssue(taskId, issueId);
+		}
 	}
 
-	private void setValue(GitlabIssue issue, String fieldName, Object value) {
-		try {
-			Field field = issue.getClass().getDeclaredField(fieldName);
-			field.setAccessible(true);
-			field.set(issue, value);
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+	private void removeLinkedIssue(String taskId, int issueId) {
+		Set<Integer> issueIds = linkedIssues.get(taskId);
+		if (issueIds != null && issueIds.remove(issueId) && issueIds.isEmpty()) {
+			linkedIssues.remove(taskId);
 		}
 	}
 
+	/**
+	 * @return a copy of the ids of the issues associated with the task
+	 */
+	private synchronized List<Integer> getLinkedIssues(String taskId) {
+		Set<Integer> issueIds = linkedIssues.get(taskId);
+		return issueIds == null ? Collections.emptyList() : new ArrayList<>(issueIds);
+	}
+
+	public void onTaskStateChanged(TaskStateListener listener) {
+		listeners.add(listener);
+	}
+
 
 	public static class LabStore {
 		public String serverUrl = "http://localhost";
 		public String token = "";
 		public String project = "";
+		public int maxConnectionsPerServer = 10;
+		public int membersCacheTtl = 60;
+		public int queryCacheTtl = 10;
+		public int closedIssuesCacheSize = 1000;
+		public int syncInterval = 60;
+		public int webhookPort = 0;
+		public String webhookAddress = "127.0.0.1";
+		public String webhookToken = "";
 		public Map<Integer, String> issues = new HashMap<>();
 
 		public LabStore() {
@@ -0,0 +1,174 @@
+package eu.broth.intellilab.model;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Closed issues which are kept in memory, mostly loaded on demand page by page. Only a limited number of them is kept:
+ * once there are too many, the ones looked at least recently are dropped again. Pages which have lost issues are loaded again as soon
+ * as the gap becomes visible.
+ *
+ * @version 17.10.2026
+ */
+class ClosedIssues {
+
+	// access order, so the eldest entry is the one used least recently
+	private final LinkedHashMap<Integer, GitlabIssue> issues = new LinkedHashMap<>(16, 0.75f, true);
+	// the pages of the current query which have been loaded and the page each of their issues belongs to
+	private final Map<Integer, Page> pages = new HashMap<>();
+	private final Map<Integer, Integer> pageOf = new HashMap<>();
+
+	private IssueQuery query;
+	private int nextPage = 1;
+	private int wantedPage = -1;
+	private boolean exhausted;
+	private boolean loading;
+
+	/**
+	 * Prepares loading the pages of the given query. Pages of another query are started over.
+	 *
+	 * @return whether the query has changed
+	 */
+	synchronized boolean select(IssueQuery query) {
+		if (query.equals(this.query))
+			return false;
+		this.query = query;
+		resetPages();
+		return true;
+	}
+
+	private void resetPages() {
+		pages.clear();
+		pageOf.clear();
+		nextPage = 1;
+		wantedPage = -1;
+		exhausted = false;
+	}
+
+	synchronized IssueQuery getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return the number of the page to load next or -1 if all pages have been loaded or a page is being loaded
+	 */
+	synchronized int startLoading() {
+		if (query == null || loading)
+			return -1;
+		// a gap which is shown comes first
+		int page = wantedPage >= 0 ? wantedPage : exhausted ? -1 : nextPage;
+		loading = page >= 0;
+		return page;
+	}
+
+	/**
+	 * Remembers which issues belong to a loaded page, so the page is loaded again once they have been dropped. The
+	 * issues themselves have to be added as well, see {@link #add(Collection, int, Predicate)}.
+	 *
+	 * @param query the query the page has been loaded for
+	 * @param last  whether there are no more pages
+	 */
+	synchronized void pageLoaded(IssueQuery query, int page, List<GitlabIssue> loaded, boolean last) {
+		loading = false;
+		if (!query.equals(this.query))
+			return;
+		if (page == nextPage) {
+			nextPage++;
+			exhausted = last;
+		}
+		if (page == wantedPage) {
+			wantedPage = -1;
+		}
+		if (!loaded.isEmpty()) {
+			pages.put(page, new Page(loaded));
+			loaded.forEach(issue -> pageOf.put(issue.getId(), page));
+		}
+	}
+
+	/**
+	 * Remembers the closed ones of the issues, no matter how they have been loaded, and drops the least recently used
+	 * closed issues if there are too many. Issues which are not closed (anymore) are not counted.
+	 *
+	 * @param keep issues which must not be dropped, e.g. since they are linked to a local task or are being changed
+	 * @return the dropped issues
+	 */
+	synchronized List<GitlabIssue> add(Collection<GitlabIssue> added, int capacity, Predicate<GitlabIssue> keep) {
+		for (GitlabIssue issue : added) {
+			if (issue.isClosed()) {
+				issues.put(issue.getId(), issue);
+			} else {
+				issues.remove(issue.getId());
+			}
+		}
+
+		List<GitlabIssue> evicted = new ArrayList<>();
+		for (Iterator<Map.Entry<Integer, GitlabIssue>> it = issues.entrySet().iterator();
+			 issues.size() > capacity && it.hasNext(); ) {
+			Map.Entry<Integer, GitlabIssue> eldest = it.next();
+			if (!eldest.getValue().isClosed()) {
+				// reopened in the meantime
+				it.remove();
+			} else if (!keep.test(eldest.getValue())) {
+				evicted.add(eldest.getValue());
+				it.remove();
+				Integer evictedPage = pageOf.remove(eldest.getKey());
+				if (evictedPage != null) {
+					pages.get(evictedPage).incomplete = true;
+				}
+			}
+		}
+		return evicted;
+	}
+
+	synchronized void loadingFailed() {
+		loading = false;
+	}
+
+	/**
+	 * Remembers that the issues have been looked at, so they are the last ones to be dropped. If issues have been
+	 * dropped between the given ids, the page closest to the top is loaded again next.
+	 *
+	 * @param lowestId  the id above which dropped issues would be visible
+	 * @param highestId the id below which dropped issues would be visible (lower than the lowest id if dropped issues
+	 *                  would not be visible at all, e.g. since the issues are filtered)
+	 * @return whether a page has to be loaded again
+	 */
+	synchronized boolean viewed(Collection<GitlabIssue> shown, int lowestId, int highestId) {
+		for (GitlabIssue issue : shown) {
+			issues.get(issue.getId());
+		}
+		wantedPage = -1;
+		for (Map.Entry<Integer, Page> entry : pages.entrySet()) {
+			Page page = entry.getValue();
+			if (page.incomplete && page.lowestId <= highestId && page.highestId >= lowestId &&
+					(wantedPage < 0 || entry.getKey() < wantedPage)) {
+				wantedPage = entry.getKey();
+			}
+		}
+		return wantedPage >= 0;
+	}
+
+	synchronized void clear() {
+		issues.clear();
+		query = null;
+		resetPages();
+	}
+
+
+	private static class Page {
+		final int lowestId;
+		final int highestId;
+		boolean incomplete;
+
+		Page(List<GitlabIssue> issues) {
+			int lowest = Integer.MAX_VALUE;
+			int highest = Integer.MIN_VALUE;
+			for (GitlabIssue issue : issues) {
+				lowest = Math.min(lowest, issue.getId());
+				highest = Math.max(highest, issue.getId());
+			}
+			this.lowestId = lowest;
+			this.highestId = highest;
+		}
+	}
+}
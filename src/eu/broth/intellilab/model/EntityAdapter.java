@@ -0,0 +1,148 @@
+package eu.broth.intellilab.model;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Single-pass (de)serializer for GitLab entities which also serves as identity map: every entity is read into a new
+ * instance, which is merged into the canonical instance with the same id afterwards. Canonical instances may be in
+ * use while a response is parsed, so they change all at once instead of field by field.
+ *
+ * @version 17.10.2026
+ */
+abstract class EntityAdapter<E extends GitlabEntity<E>> extends TypeAdapter<E> {
+
+	private final ConcurrentMap<Integer, E> entities = new ConcurrentHashMap<>();
+
+	/**
+	 * @return a new, empty entity
+	 */
+	abstract E create();
+
+	/**
+	 * Reads the value of the given field into the entity, which has just been created and is not shared yet. Unknown
+	 * fields have to be skipped.
+	 */
+	abstract void readField(E entity, String name, JsonReader in) throws IOException;
+
+	/**
+	 * Writes all fields but the id.
+	 */
+	abstract void writeFields(JsonWriter out, E entity) throws IOException;
+
+	@Override
+	public E read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+
+		E parsed = create();
+		boolean identified = false;
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if ("id".equals(name)) {
+				parsed.id = in.nextInt();
+				identified = true;
+			} else {
+				readField(parsed, name, in);
+			}
+		}
+		in.endObject();
+		if (!identified)
+			return parsed;
+
+		E known = entities.putIfAbsent(parsed.id, parsed);
+		if (known == null)
+			return parsed;
+		known.merge(parsed);
+		return known;
+	}
+
+	@Override
+	public void write(JsonWriter out, E entity) throws IOException {
+		if (entity == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		out.name("id").value(entity.getId());
+		writeFields(out, entity);
+		out.endObject();
+	}
+
+	/**
+	 * @return the cached instance with the given id, which is created if not known yet
+	 */
+	E canonical(int id) {
+		return entities.computeIfAbsent(id, key -> {
+			E entity = create();
+			entity.id = key;
+			return entity;
+		});
+	}
+
+	E get(int id) {
+		return entities.get(id);
+	}
+
+	/**
+	 * Drops the entity, unless another instance has become the canonical one meanwhile.
+	 */
+	void forget(E entity) {
+		entities.remove(entity.id, entity);
+	}
+
+	Collection<E> getAll() {
+		return entities.values();
+	}
+
+
+	static String nextString(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		return in.nextString();
+	}
+
+	static int nextInt(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return 0;
+		}
+		return in.nextInt();
+	}
+
+	static String[] nextStringArray(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return new String[0];
+		}
+		List<String> values = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			values.add(nextString(in));
+		}
+		in.endArray();
+		return values.toArray(new String[values.size()]);
+	}
+
+	static void writeStringArray(JsonWriter out, String[] values) throws IOException {
+		out.beginArray();
+		for (String value : values) {
+			out.value(value);
+		}
+		out.endArray();
+	}
+}
@@ -1,12 +1,12 @@
 package eu.broth.intellilab.model;
 
-import com.google.gson.*;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
 
-import java.lang.reflect.Type;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
 
 /**
  * @author Bastian Roth
@@ -17,17 +17,58 @@ class EntityManager {
 	public final String JS_NULL = "";
 
 	private Gson gs;
-	private Map<String, GitlabEntity> entities;
+	private GitlabUser.Adapter users;
+	private GitlabIssue.Adapter issues;
+	// labels are kept across resets, so issue instances which survive a reset keep valid label bits
+	private volatile LabelDictionary labels = new LabelDictionary();
 
 	public EntityManager() {
 		reset();
 	}
 
-	private void reset() {
-		GsonBuilder builder = new GsonBuilder();
-		builder.registerTypeHierarchyAdapter(GitlabEntity.class, new CachingDeserializer(true));
+	/**
+	 * Forgets all known entities.
+	 */
+	void reset() {
+		// every adapter holds the identity map of its entity type
+		users = new GitlabUser.Adapter();
+		issues = new GitlabIssue.Adapter(users, labels);
+		GitlabNamespace.Adapter namespaces = new GitlabNamespace.Adapter();
+		GsonBuilder builder = new GsonBuilder()
+				.registerTypeAdapter(GitlabUser.class, users)
+				.registerTypeAdapter(GitlabNamespace.class, namespaces)
+				.registerTypeAdapter(GitlabProject.class, new GitlabProject.Adapter(namespaces))
+				.registerTypeAdapter(GitlabIssue.class, issues);
 		gs = builder.create();
-		entities = new HashMap<>();
+	}
+
+	/**
+	 * Forgets all known entities and labels, since another project has been loaded. Issues known so far must not be
+	 * used anymore, their label bits refer to the labels of the previous project.
+	 */
+	void clear() {
+		labels = new LabelDictionary();
+		reset();
+	}
+
+	LabelDictionary getLabels() {
+		return labels;
+	}
+
+	GitlabUser user(int id) {
+		return users.canonical(id);
+	}
+
+	GitlabIssue issue(int id) {
+		return issues.canonical(id);
+	}
+
+	/**
+	 * Drops an issue which is not kept anymore, e.g. since it has been deleted. It is parsed into a new instance if
+	 * it shows up again.
+	 */
+	void forget(GitlabIssue issue) {
+		issues.forget(issue);
 	}
 
 	public String toJson(Object issue) {
@@ -41,66 +82,35 @@ class EntityManager {
 		return gs.fromJson(json, GitlabProject.class);
 	}
 
-	public List<GitlabProject> extractProjects(String json) {
+	public void streamProjects(Reader json, Consumer<GitlabProject> consumer) throws IOException {
 		reset();
-		return gs.fromJson(json, LIST_TYPES.get(GitlabProject.class));
+		stream(json, GitlabProject.class, consumer);
 	}
 
-	public GitlabIssue extractIssue(String json) {
-		return  gs.fromJson(json, GitlabIssue.class);
+	public GitlabIssue extractIssue(Reader json) {
+		return gs.fromJson(json, GitlabIssue.class);
 	}
 
-	public List<GitlabIssue> extractIssues(String json) {
-		reset();
-		return gs.fromJson(json, LIST_TYPES.get(GitlabIssue.class));
+	public void streamIssues(Reader json, Consumer<GitlabIssue> consumer) throws IOException {
+		stream(json, GitlabIssue.class, consumer);
 	}
 
-	public List<GitlabUser> extractUsers(String json) {
-		return gs.fromJson(json, LIST_TYPES.get(GitlabUser.class));
+	public void streamUsers(Reader json, Consumer<GitlabUser> consumer) throws IOException {
+		stream(json, GitlabUser.class, consumer);
 	}
 
-	private String toKey(final GitlabEntity entity) {
-		return entity.getClass().getSimpleName() + entity.getId();
-	}
-
-
-	private static final Map<Class<? extends GitlabEntity>, Type> LIST_TYPES = new HashMap<>();
-
-	static {
-		LIST_TYPES.put(GitlabProject.class, new TypeToken<List<GitlabProject>>() {
-		}.getType());
-		LIST_TYPES.put(GitlabUser.class, new TypeToken<List<GitlabUser>>() {
-		}.getType());
-		LIST_TYPES.put(GitlabIssue.class, new TypeToken<List<GitlabIssue>>() {
-		}.getType());
-	}
-
-	private class CachingDeserializer implements JsonDeserializer {
-
-		private final Gson tempGs;
-
-		private CachingDeserializer(boolean supportsNestedUsers) {
-			// required to cache GitLab users as well
-			GsonBuilder builder = new GsonBuilder();
-			if (supportsNestedUsers) {
-				builder.registerTypeHierarchyAdapter(GitlabUser.class, new CachingDeserializer(false));
-			}
-			tempGs = builder.create();
-		}
-
-		@Override
-		public Object deserialize(JsonElement jsonElement, Type type, JsonDeserializationContext jsonContext) throws JsonParseException {
-			GitlabEntity tempEntity = tempGs.fromJson(jsonElement, type);
-			String key = toKey(tempEntity);
-			GitlabEntity entity = entities.get(key);
-			if (entity == null) {
-				entity = tempEntity;
-				entities.put(key, entity);
-			} else {
-				entity.merge(tempEntity);
-			}
-			return entity;
+	/**
+	 * Parses a JSON array element by element and hands over every entity as soon as it is complete, so neither the
+	 * whole body nor the whole array needs to be held in memory.
+	 */
+	private <E extends GitlabEntity<E>> void stream(Reader json, Class<E> type, Consumer<? super E> consumer)
+			throws IOException {
+		JsonReader reader = new JsonReader(json);
+		reader.beginArray();
+		while (reader.hasNext()) {
+			E entity = gs.fromJson(reader, type);
+			consumer.accept(entity);
 		}
+		reader.endArray();
 	}
-
 }
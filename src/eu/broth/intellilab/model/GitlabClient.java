@@ -1,25 +1,54 @@
 package eu.broth.intellilab.model;
 
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.tasks.LocalTask;
 import com.intellij.util.messages.Topic;
 import eu.broth.intellilab.IntelliLab;
+import eu.broth.intellilab.util.HttpTransport;
 import eu.broth.intellilab.util.Params;
+import eu.broth.intellilab.util.RestResponse;
 import eu.broth.intellilab.util.RestUtil;
+import eu.broth.intellilab.util.WebhookReceiver;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * @author Bastian Roth
  * @version 05.04.2014
  */
-public class GitlabClient {
-	public static final Topic<IssuesLoadedNotifier> ISSUES_LOADED_TOPIC = Topic.create("GitLab issues loaded", IssuesLoadedNotifier.class);
+public class GitlabClient implements Disposable {
+	public static final Topic<IssuesChangedNotifier> ISSUES_CHANGED_TOPIC = Topic.create("GitLab issues changed", IssuesChangedNotifier.class);
 
 	private static final String API_SUFFIX = "/api/v3";
+	private static final int PAGE_SIZE = 100;
+	private static final int MAX_PARALLEL_PAGES = 4;
+	private static final int MAX_PARALLEL_LINKED_ISSUES = 2;
+	// project and group members, closed issues and writes may be requested while the pages are loaded
+	private static final int OTHER_REQUESTS = 4;
+	private static final long PUBLISH_INTERVAL = 200;
 
 	private static final Map<Project, GitlabClient> CLIENTS = new HashMap<>();
 
@@ -28,6 +57,7 @@ public class GitlabClient {
 		if (client == null) {
 			client = new GitlabClient(intellijProject);
 			CLIENTS.put(intellijProject, client);
+			Disposer.register(intellijProject, client);
 		}
 		return client;
 	}
@@ -37,23 +67,53 @@ public class GitlabClient {
 
 	private String serverUrl = "http://localhost";
 	private String token = "";
+	private HttpTransport transport;
 	private GitlabProject glProject;
 
-	private List<GitlabIssue> issues = Collections.emptyList();
-	private Map<Integer, GitlabIssue> issuesById;
-	private GitlabIssue activeIssue;
+	private final IssueStore store = new IssueStore();
+	private final IssueIndex index = new IssueIndex();
+	// change sets build on each other, so the index and the listeners have to get them in order
+	private final Object publishLock = new Object();
+	private volatile GitlabIssue activeIssue;
+
+	// the issues shown and when the issues of each query have been loaded completely the last time
+	private volatile IssueQuery query = IssueQuery.DEFAULT;
+	private final Map<IssueQuery, Long> queriesLoaded = new ConcurrentHashMap<>();
+	// closed issues are only loaded when they are asked for
+	private final ClosedIssues closedIssues = new ClosedIssues();
+
+	// state of the incremental issue sync
+	private volatile String updatedAfter;
+	private final AtomicReference<String> newestUpdate = new AtomicReference<>();
+	private volatile long lastPublished;
+	private CompletableFuture<Void> refreshing;
+	private final Map<String, String> etags = new ConcurrentHashMap<>();
+	// whether issues have been added, updated or removed since the snapshot has been saved
+	private volatile boolean snapshotOutdated;
+	// ids of the issues returned by a running full refresh, all others have been deleted on the server
+	private volatile Set<Integer> seenIds;
 
 	private final EntityManager em;
+	private final IssueWriteQueue writes;
+	private final SyncScheduler scheduler;
+	private final WebhookReceiver.IssueHookListener hookListener = this::issueHookReceived;
+	private WebhookReceiver webhooks;
 
 	private GitlabClient(Project intellijProject) {
 		ijProject = intellijProject;
 		lab = intellijProject.getComponent(IntelliLab.class);
 
 		em = new EntityManager();
+		writes = new IssueWriteQueue(this::writeIssue, this::writeFailed);
+		scheduler = new SyncScheduler(this::refreshIssues, () -> TimeUnit.SECONDS.toMillis(lab.getSyncInterval()));
 		loadConfiguration();
+		scheduler.start();
+		startWebhooks();
 
 		lab.onTaskStateChanged((issueId, newState) -> {
-			GitlabIssue issue = issuesById.get(issueId);
+			GitlabIssue issue = store.get(issueId);
+			if (issue == null)
+				return;
 			switch (newState) {
 				case OPEN:
 					if (issue.isActive()) {
@@ -77,7 +137,9 @@ public class GitlabClient {
 							performIssueTransition(issue, transition);
 						} else {
 							// at least, set issue's task to null
-							issue.task = null;
+							issue.setTask(null);
+							store.touch(issue);
+							publishIssues(ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC));
 						}
 					}
 					break;
@@ -85,15 +147,117 @@ public class GitlabClient {
 		});
 	}
 
+	@Override
+	public void dispose() {
+		CLIENTS.remove(ijProject);
+		scheduler.stop();
+		if (webhooks != null) {
+			webhooks.release(hookListener);
+			webhooks = null;
+		}
+		// queued changes must not get lost, so release the connections only after they have been sent
+		writes.flushAll().whenComplete((result, t) -> {
+			if (transport != null) {
+				transport.release();
+				transport = null;
+			}
+		});
+	}
+
 	private void loadConfiguration() {
 		serverUrl = lab.getServerUrl();
+		transport = HttpTransport.acquire(serverUrl, lab.getMaxConnectionsPerServer());
 		String encodedToken = lab.getToken();
 		try {
 			token = new String(Base64.getDecoder().decode(encodedToken), "utf-8");
 		} catch (UnsupportedEncodingException e) {
 			throw new RuntimeException(e);
 		}
-		setProject(em.extractProject(lab.getProject()));
+		glProject = em.extractProject(lab.getProject());
+		if (glProject != null && loadSnapshot()) {
+			// cached issues are shown right away, so only bring them up to date
+			refreshIssues();
+		} else {
+			refreshIssues(true);
+		}
+	}
+
+	/**
+	 * Restores the issues of the current project from the local snapshot.
+	 *
+	 * @return true if a snapshot was available
+	 */
+	private boolean loadSnapshot() {
+		IssueSnapshot snapshot = IssueSnapshot.read(IssueSnapshot.fileFor(serverUrl, glProject), em);
+		if (snapshot == null)
+			return false;
+
+		lab.restoreTaskLinks(snapshot.taskLinks);
+		List<GitlabIssue> restored = new ArrayList<>();
+		snapshot.issues.forEach(issue -> restored.add(storeIssue(issue)));
+		augmentIssues(restored);
+		trackClosedIssues(restored);
+		glProject.setMembers(snapshot.members);
+		updatedAfter = snapshot.updatedAfter;
+		newestUpdate.set(updatedAfter);
+		// the snapshot holds all issues of the default query, see saveSnapshot()
+		queriesLoaded.put(IssueQuery.DEFAULT, System.currentTimeMillis());
+		publishIssues(ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC));
+		// the snapshot holds exactly what has just been published
+		snapshotOutdated = false;
+		return true;
+	}
+
+	private void startWebhooks() {
+		int port = lab.getWebhookPort();
+		if (port <= 0)
+			return;
+		try {
+			webhooks = WebhookReceiver.acquire(lab.getWebhookAddress(), port, lab.getWebhookToken(), hookListener);
+		} catch (IOException e) {
+			Notifications.Bus.notify(new Notification("GitLab", "Web hooks not available",
+					"Cannot receive GitLab web hooks on port " + port + " (" + e.getMessage() + "), so issues are " +
+							"polled only.", NotificationType.WARNING), ijProject);
+		}
+	}
+
+	/**
+	 * GitLab has pushed a change of an issue, so fetch just that issue instead of waiting for the next poll.
+	 */
+	private void issueHookReceived(int projectId, int issueId) {
+		GitlabProject project = glProject;
+		if (project == null || project.getId() != projectId)
+			return;
+		scheduler.pushReceived();
+		RestUtil.GET(transport, buildIssueUri(issueId), token, "Loading issue ...", response -> {
+			mergeIssue(em.extractIssue(response.getReader()));
+			return null;
+		}).thenRun(() -> publishIssues(ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC)));
+	}
+
+	/**
+	 * Saves the issues of the default query, which is the one shown after a restart. Unless it has been loaded
+	 * completely since the last full refresh, the working set does not hold all of its issues. The previous snapshot
+	 * is kept then, and a delta sync from its own watermark brings it up to date after a restart.
+	 */
+	private void saveSnapshot() {
+		if (glProject == null || !queriesLoaded.containsKey(IssueQuery.DEFAULT))
+			return;
+		File file = IssueSnapshot.fileFor(serverUrl, glProject);
+		// changes published from now on are not part of this snapshot
+		snapshotOutdated = false;
+		Predicate<GitlabIssue> matcher = IssueQuery.DEFAULT.matcher(em.getLabels());
+		List<GitlabIssue> issues = new ArrayList<>();
+		for (GitlabIssue issue : store.getAll()) {
+			if (matcher.test(issue)) {
+				// written in the background while the issue may change
+				issues.add(issue.copy());
+			}
+		}
+		List<GitlabUser> members = glProject.getMembers();
+		Map<Integer, String> taskLinks = lab.getTaskLinks();
+		String updatedAfter = this.updatedAfter;
+		IssueSnapshot.writeLater(file, updatedAfter, issues, members, taskLinks);
 	}
 
 	public String getServerUrl() {
@@ -101,10 +265,27 @@ public class GitlabClient {
 	}
 
 	public void setServerUrl(String url) {
+		if (!url.equals(serverUrl)) {
+			// switch over to the transport of the new server
+			HttpTransport newTransport = HttpTransport.acquire(url, lab.getMaxConnectionsPerServer());
+			if (transport != null) {
+				transport.release();
+			}
+			transport = newTransport;
+		}
 		this.serverUrl = url;
 		lab.setServerUrl(url);
 	}
 
+	public int getMaxConnectionsPerServer() {
+		return lab.getMaxConnectionsPerServer();
+	}
+
+	public void setMaxConnectionsPerServer(int maxConnections) {
+		lab.setMaxConnectionsPerServer(maxConnections);
+		transport.setMaxPerRoute(maxConnections);
+	}
+
 	public String getPrivateToken() {
 		return token;
 	}
@@ -120,15 +301,24 @@ public class GitlabClient {
 	}
 
 	public boolean fetchProjects(Consumer<GitlabProject> processor) {
-		return RestUtil.GET(serverUrl + API_SUFFIX + "/projects", token, "Loading projects ...", response -> {
-			List<GitlabProject> projects = em.extractProjects(response);
-			projects.forEach(processor::accept);
+		return RestUtil.GET_MODAL(transport, serverUrl + API_SUFFIX + "/projects", token, "Loading projects ...", response -> {
+			em.streamProjects(response.getReader(), processor);
+			return null;
 		});
 	}
 
 	private void setProject(GitlabProject project) {
 		this.glProject = project;
-		refreshIssues();
+		queriesLoaded.clear();
+		closedIssues.clear();
+		synchronized (publishLock) {
+			// labels of the previous project are not needed anymore
+			em.clear();
+			IssueChangeSet changes = store.clear();
+			index.apply(changes);
+			ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC).accept(changes);
+		}
+		refreshIssues(true);
 	}
 
 	public GitlabProject getProject() {
@@ -155,76 +345,556 @@ public class GitlabClient {
 	}
 
 
-	public void refreshIssues() {
-		final IssuesLoadedNotifier notifier = ijProject.getMessageBus().syncPublisher(ISSUES_LOADED_TOPIC);
-		if (glProject == null) {
-			notifier.accept(null);
+	public IssueQuery getQuery() {
+		return query;
+	}
+
+	/**
+	 * Changes which issues are shown. Matching issues which are already known are shown right away, the others are
+	 * requested from the server unless the query has been loaded recently. Closed issues are requested page by
+	 * page, see {@link #loadMoreClosedIssues()}.
+	 */
+	public void setQuery(IssueQuery query) {
+		if (query.equals(this.query))
 			return;
+		this.query = query;
+		publishIssues(ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC));
+		refreshIssues();
+		if (query.getScope() != IssueQuery.Scope.OPEN && closedIssues.select(query.withScope(IssueQuery.Scope.CLOSED))) {
+			loadMoreClosedIssues();
+		}
+	}
+
+	private boolean isLoaded(IssueQuery query) {
+		Long loadedAt = queriesLoaded.get(query);
+		long ttl = TimeUnit.MINUTES.toMillis(lab.getQueryCacheTtl());
+		return loadedAt != null && System.currentTimeMillis() - loadedAt < ttl;
+	}
+
+	/**
+	 * Brings the issues up to date in the background. After the first complete load, only issues which have been
+	 * updated since the last refresh are requested and merged into the existing ones. The issues of a query which
+	 * has not been loaded for a while are requested completely.
+	 *
+	 * @return a future which completes as soon as issues and members have been refreshed
+	 */
+	public CompletableFuture<Void> refreshIssues() {
+		return refreshIssues(false);
+	}
+
+	private synchronized CompletableFuture<Void> refreshIssues(boolean full) {
+		final IssuesChangedNotifier notifier = ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC);
+		if (glProject == null) {
+			notifier.accept(IssueChangeSet.reset(Collections.emptyList()));
+			return CompletableFuture.completedFuture(null);
 		}
 
-		boolean issuesLoadSuccess = RestUtil.GET(buildUri(null), token, "Loading issues ...", response -> {
-			issues = em.extractIssues(response);
-			issuesById = new HashMap<>();
-			issues.forEach((issue) -> {
-				lab.augmentIssue(issue);
-				if (issue.getState() == GitlabIssue.State.ACTIVE) {
-					activeIssue = issue;
+		// never run more than one refresh at the same time
+		CompletableFuture<Void> previous = refreshing;
+		if (previous != null && !previous.isDone()) {
+			if (!full && isLoaded(query))
+				return previous;
+			refreshing = previous.handle((result, t) -> null).thenCompose(ignore -> syncIssues(full, notifier));
+		} else {
+			refreshing = syncIssues(full, notifier);
+		}
+		return refreshing;
+	}
+
+	private CompletableFuture<Void> syncIssues(boolean full, IssuesChangedNotifier notifier) {
+		IssueQuery issueQuery = this.query;
+		String watermark = updatedAfter;
+		Params query = new Params("per_page", String.valueOf(PAGE_SIZE));
+		boolean complete;
+		if (full || updatedAfter == null) {
+			// known issues are kept (and updated in place), so listeners only learn about the actual differences
+			em.reset();
+			updatedAfter = null;
+			etags.clear();
+			queriesLoaded.clear();
+			closedIssues.clear();
+			// closed issues loaded before are kept until there are too many of them again
+			trackClosedIssues(store.getAll());
+			complete = true;
+		} else {
+			complete = !isLoaded(issueQuery);
+		}
+		// open issues are loaded completely, closed ones only on demand
+		IssueQuery eagerQuery = issueQuery.withScope(IssueQuery.Scope.OPEN);
+		if (complete) {
+			// only the selected issues are transferred
+			eagerQuery.addTo(query);
+			seenIds = ConcurrentHashMap.newKeySet();
+		} else {
+			// delta sync: only ask for issues changed since the newest one known, including those which do not match
+			// the query anymore (e.g. since they have been closed)
+			query.add("order_by", "updated_at").add("sort", "desc").add("updated_after", updatedAfter);
+		}
+		newestUpdate.set(updatedAfter);
+
+		// issues, project members and group members do not depend on each other, so load them at the same time
+		CompletableFuture<Void> issuesLoaded;
+		if (complete) {
+			// issues of another query may have changed before the newest issue of this one, so a query on its own does
+			// not tell how far the issues are up to date
+			issuesLoaded = loadIssues(query, updatedAfter == null, notifier);
+			// issues linked to a local task are needed even if they do not match the query
+			issuesLoaded = issuesLoaded.thenCompose(ignore -> loadLinkedIssues());
+		} else {
+			issuesLoaded = loadChangedIssues(query, updatedAfter, notifier);
+		}
+		CompletableFuture<List<GitlabUser>> projectMembers = refreshMembers(false);
+		CompletableFuture<List<GitlabUser>> groupMembers = glProject.getNamespace().isGroup()
+				? refreshMembers(true) : CompletableFuture.completedFuture(Collections.emptyList());
+
+		return CompletableFuture.allOf(issuesLoaded, projectMembers, groupMembers).thenRun(() -> {
+			Set<Integer> seen = seenIds;
+			if (seen != null) {
+				// issues matching the query which have not been returned have been deleted or do not match anymore
+				Predicate<GitlabIssue> matcher = eagerQuery.matcher(em.getLabels());
+				store.removeIf(issue -> matcher.test(issue) && !seen.contains(issue.getId())).forEach(em::forget);
+				seenIds = null;
+				queriesLoaded.put(issueQuery, System.currentTimeMillis());
+			}
+
+			// potential issue assignees are the members of the project and its group
+			Set<GitlabUser> members = new LinkedHashSet<>(projectMembers.join());
+			members.addAll(groupMembers.join());
+			glProject.setMembers(members);
+
+			publishIssues(notifier);
+			// a poll which has not changed anything would only write the same snapshot again
+			if (snapshotOutdated || !Objects.equals(watermark, updatedAfter)) {
+				saveSnapshot();
+			}
+			if (issueQuery.getScope() != IssueQuery.Scope.OPEN &&
+					closedIssues.select(issueQuery.withScope(IssueQuery.Scope.CLOSED))) {
+				loadMoreClosedIssues();
+			}
+		});
+	}
+
+	/**
+	 * Loads the issues linked to a local task which are not known yet, e.g. since they have been closed. The API
+	 * cannot list issues by id, so they are requested one by one, but never more than
+	 * {@link #MAX_PARALLEL_LINKED_ISSUES} at once.
+	 */
+	private CompletableFuture<Void> loadLinkedIssues() {
+		Queue<Integer> missing = new ConcurrentLinkedQueue<>();
+		for (Integer issueId : lab.getTaskLinks().keySet()) {
+			if (store.get(issueId) == null) {
+				missing.add(issueId);
+			}
+		}
+		CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(MAX_PARALLEL_LINKED_ISSUES, missing.size())];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = loadNextLinkedIssue(missing);
+		}
+		return CompletableFuture.allOf(workers);
+	}
+
+	private CompletableFuture<Void> loadNextLinkedIssue(Queue<Integer> missing) {
+		Integer issueId = missing.poll();
+		if (issueId == null)
+			return CompletableFuture.completedFuture(null);
+		return RestUtil.GET(transport, buildIssueUri(issueId), token, "Loading linked issue ...", response -> {
+			mergeIssue(em.extractIssue(response.getReader()));
+			return null;
+		}).handle((result, t) -> null).thenCompose(ignore -> loadNextLinkedIssue(missing));
+	}
+
+	/**
+	 * Loads the next page of closed issues matching the query, unless all of them have been loaded already or a page
+	 * is being loaded right now. Only a limited number of closed issues is kept, the ones looked at least recently are
+	 * dropped again. A page which has lost issues is loaded again first if the gap is shown, see
+	 * {@link #issuesViewed(Collection, int, int)}.
+	 *
+	 * @return a future which completes as soon as the page has been loaded
+	 */
+	public CompletableFuture<Void> loadMoreClosedIssues() {
+		IssueQuery closedQuery = closedIssues.getQuery();
+		int page = closedIssues.startLoading();
+		if (page < 0)
+			return CompletableFuture.completedFuture(null);
+		if (glProject == null) {
+			closedIssues.loadingFailed();
+			return CompletableFuture.completedFuture(null);
+		}
+
+		Params params = new Params("per_page", String.valueOf(PAGE_SIZE));
+		closedQuery.addTo(params);
+		params.add("order_by", "created_at").add("sort", "desc");
+		IssuesChangedNotifier notifier = ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC);
+		return RestUtil.GET(transport, buildPageUri(params, page), token, "Loading closed issues ...", response -> {
+			int totalPages = response.getTotalPages();
+			List<GitlabIssue> merged = new ArrayList<>();
+			em.streamIssues(response.getReader(), issue -> merged.add(storeIssue(issue)));
+			augmentIssues(merged);
+			boolean last = totalPages >= 0 ? page >= totalPages : merged.size() < PAGE_SIZE;
+			closedIssues.pageLoaded(closedQuery, page, merged, last);
+			trackClosedIssues(merged);
+			return null;
+		}).handle((result, t) -> {
+			if (t != null) {
+				closedIssues.loadingFailed();
+			} else {
+				publishIssues(notifier);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Tells which issues are looked at, e.g. since they are shown or selected. Closed issues looked at recently are
+	 * the last ones to be dropped, and dropped issues are loaded again as soon as they would be shown.
+	 *
+	 * @param lowestId  the id above which dropped issues would be shown
+	 * @param highestId the id below which dropped issues would be shown (lower than the lowest id if dropped issues
+	 *                  would not be shown at all)
+	 */
+	public void issuesViewed(Collection<GitlabIssue> issues, int lowestId, int highestId) {
+		if (closedIssues.viewed(issues, lowestId, highestId)) {
+			loadMoreClosedIssues();
+		}
+	}
+
+	/**
+	 * Loads all issues matching the query. The first page is never requested conditionally, since a complete load
+	 * has to see every issue to find out which ones are gone.
+	 */
+	private CompletableFuture<Void> loadIssues(Params query, boolean moveWatermark, IssuesChangedNotifier notifier) {
+		// load first page to find out how many pages there are at all
+		return RestUtil.GET(transport, buildPageUri(query, 1), token, "Loading issues ...", response -> {
+			PageInfo info = new PageInfo(response);
+			mergeIssues(response, notifier);
+			return info;
+		}).thenCompose(first -> {
+			CompletableFuture<Void> remaining;
+			if (first.totalPages > 1) {
+				remaining = loadPages(query, first.totalPages, notifier);
+			} else if (first.totalPages < 0 && first.next != null) {
+				remaining = followPages(first.next, notifier);
+			} else {
+				remaining = CompletableFuture.completedFuture(null);
+			}
+			return remaining.thenRun(() -> {
+				// only remember the sync state once all pages have arrived
+				if (moveWatermark) {
+					updatedAfter = newestUpdate.get();
 				}
-				issuesById.put(issue.getId(), issue);
 			});
-			notifier.accept(issues);
 		});
+	}
 
-		// reload potential issue assignees (project members) as well
-		if (issuesLoadSuccess) {
-			glProject.clearMembers();
-			boolean membersLoadSuccess = refreshMembers(false);
-			if (membersLoadSuccess && glProject.getNamespace().isGroup()) {
-				refreshMembers(true);
+	/**
+	 * Loads the issues updated after the watermark. Not every server supports <code>updated_after</code>, so the
+	 * pages, which list the most recently updated issues first, are loaded one after another until an issue shows up
+	 * which has not been updated since.
+	 */
+	private CompletableFuture<Void> loadChangedIssues(Params query, String watermark, IssuesChangedNotifier notifier) {
+		String firstUri = buildPageUri(query, 1);
+		// the watermark moves with every change, so only one entity tag is kept per query
+		String etagKey = buildPageUri(new Params().merge(query).remove("updated_after"), 1);
+		return RestUtil.GET(transport, firstUri, token, etags.get(etagKey), "Loading changed issues ...", response -> {
+			if (response.isNotModified())
+				return null;
+			return new PageInfo(response, mergeIssues(response, notifier));
+		}).thenCompose(first -> {
+			if (first == null)
+				return CompletableFuture.completedFuture(null);
+			return loadChangedPages(query, 1, first, watermark, notifier).thenRun(() -> {
+				// only remember the sync state once all pages have arrived
+				updatedAfter = newestUpdate.get();
+				if (first.etag != null) {
+					etags.put(etagKey, first.etag);
+				}
+			});
+		});
+	}
+
+	private CompletableFuture<Void> loadChangedPages(Params query, int page, PageInfo info, String watermark,
+													 IssuesChangedNotifier notifier) {
+		// the following pages only hold issues which have not changed either
+		if (info.oldestUpdate == null || isNewer(watermark, info.oldestUpdate) || !info.hasMore(page))
+			return CompletableFuture.completedFuture(null);
+		int nextPage = page + 1;
+		return RestUtil.GET(transport, buildPageUri(query, nextPage), token, "Loading changed issues ...",
+				response -> new PageInfo(response, mergeIssues(response, notifier)))
+				.thenCompose(next -> loadChangedPages(query, nextPage, next, watermark, notifier));
+	}
+
+	/**
+	 * Loads all remaining pages at the same time, but never more than {@link #MAX_PARALLEL_PAGES} at once. Some
+	 * connections are left to the members and other requests running meanwhile, so none of them runs out of time
+	 * waiting for a connection.
+	 */
+	private CompletableFuture<Void> loadPages(Params query, int totalPages, IssuesChangedNotifier notifier) {
+		AtomicInteger nextPage = new AtomicInteger(2);
+		int maxWorkers = Math.max(1, lab.getMaxConnectionsPerServer() - OTHER_REQUESTS);
+		CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(Math.min(MAX_PARALLEL_PAGES, maxWorkers),
+				totalPages - 1)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = loadNextPage(query, totalPages, nextPage, notifier);
+		}
+		return CompletableFuture.allOf(workers);
+	}
+
+	private CompletableFuture<Void> loadNextPage(Params query, int totalPages, AtomicInteger nextPage,
+												 IssuesChangedNotifier notifier) {
+		int page = nextPage.getAndIncrement();
+		if (page > totalPages)
+			return CompletableFuture.completedFuture(null);
+
+		String message = "Loading issues (page " + page + " of " + totalPages + ") ...";
+		return RestUtil.GET(transport, buildPageUri(query, page), token, message, response -> {
+			mergeIssues(response, notifier);
+			return null;
+		}).thenCompose(ignore -> loadNextPage(query, totalPages, nextPage, notifier));
+	}
+
+	/**
+	 * Server does not tell the number of pages, so follow the links one after another.
+	 */
+	private CompletableFuture<Void> followPages(String uri, IssuesChangedNotifier notifier) {
+		return RestUtil.GET(transport, uri, token, "Loading issues ...", response -> {
+			String next = response.getLink("next");
+			mergeIssues(response, notifier);
+			return next;
+		}).thenCompose(next -> {
+			if (next == null)
+				return CompletableFuture.completedFuture(null);
+			return followPages(next, notifier);
+		});
+	}
+
+	/**
+	 * Merges a page of issues returned by the sync query into the issue list while it is being parsed. The issues
+	 * table is fed from time to time, so it fills up progressively. May be called concurrently for different pages.
+	 * <p>
+	 * Only these issues move the watermark: an issue merged otherwise, e.g. the response to a change, may be newer
+	 * than changes of other issues which the sync has not returned yet.
+	 *
+	 * @return the oldest update time of the issues on the page or null if there are none
+	 */
+	private String mergeIssues(RestResponse page, IssuesChangedNotifier notifier) throws IOException {
+		// tasks are attached to all issues merged in between two publications at once
+		List<GitlabIssue> merged = new ArrayList<>();
+		String[] oldestUpdate = new String[1];
+		em.streamIssues(page.getReader(), issue -> {
+			String updatedAt = issue.getUpdatedAt();
+			if (updatedAt != null) {
+				if (oldestUpdate[0] == null || isNewer(oldestUpdate[0], updatedAt)) {
+					oldestUpdate[0] = updatedAt;
+				}
+				newestUpdate.accumulateAndGet(updatedAt,
+						(newest, candidate) -> isNewer(candidate, newest) ? candidate : newest);
+			}
+			merged.add(storeIssue(issue));
+			if (System.currentTimeMillis() - lastPublished >= PUBLISH_INTERVAL) {
+				augmentIssues(merged);
+				trackClosedIssues(merged);
+				merged.clear();
+				publishIssues(notifier);
+			}
+		});
+		augmentIssues(merged);
+		trackClosedIssues(merged);
+		publishIssues(notifier);
+		return oldestUpdate[0];
+	}
+
+	/**
+	 * Merges a single issue into the store and attaches its task.
+	 *
+	 * @return the instance kept in the store
+	 */
+	private GitlabIssue mergeIssue(GitlabIssue issue) {
+		issue = storeIssue(issue);
+		augmentIssues(Collections.singletonList(issue));
+		trackClosedIssues(Collections.singletonList(issue));
+		return issue;
+	}
+
+	/**
+	 * Attaches the associated tasks to the issues, which decide about whether an issue is active.
+	 */
+	private void augmentIssues(Collection<GitlabIssue> issues) {
+		lab.augmentIssues(issues);
+		for (GitlabIssue issue : issues) {
+			if (issue.getState() == GitlabIssue.State.ACTIVE) {
+				activeIssue = issue;
 			}
 		}
 	}
 
-	private boolean refreshMembers(boolean inGroup) {
+	/**
+	 * Counts the closed ones of the issues towards the closed issues kept in memory, no matter whether they have been
+	 * loaded page by page or e.g. by a sync. Dropped issues disappear with the next publication.
+	 */
+	private void trackClosedIssues(Collection<GitlabIssue> issues) {
+		List<GitlabIssue> evicted = closedIssues.add(issues, lab.getClosedIssuesCacheSize(),
+				issue -> lab.isLinked(issue.getId()) || issue == activeIssue || writes.hasPending(issue));
+		for (GitlabIssue issue : evicted) {
+			store.remove(issue);
+			em.forget(issue);
+		}
+	}
+
+	/**
+	 * Merges a single issue into the store without attaching its task. May be called concurrently, e.g. for
+	 * different pages.
+	 *
+	 * @return the instance kept in the store
+	 */
+	private GitlabIssue storeIssue(GitlabIssue issue) {
+		issue = store.merge(issue);
+		Set<Integer> seen = seenIds;
+		if (seen != null) {
+			seen.add(issue.getId());
+		}
+		return issue;
+	}
+
+	/**
+	 * Tells the listeners which issues have been added, updated or removed since the last time.
+	 */
+	private void publishIssues(IssuesChangedNotifier notifier) {
+		synchronized (publishLock) {
+			IssueChangeSet changes = store.publish(query.matcher(em.getLabels()));
+			lastPublished = System.currentTimeMillis();
+			if (!changes.isEmpty()) {
+				index.apply(changes);
+				notifier.accept(changes);
+				scheduler.issuesChanged();
+				snapshotOutdated = true;
+			}
+		}
+	}
+
+	/**
+	 * What the first page of a paginated response tells about the remaining ones.
+	 */
+	private static class PageInfo {
+		final int totalPages;
+		final String next;
+		final String etag;
+		final String oldestUpdate;
+
+		PageInfo(RestResponse response) {
+			this(response, null);
+		}
+
+		PageInfo(RestResponse response, String oldestUpdate) {
+			totalPages = response.getTotalPages();
+			next = response.getLink("next");
+			etag = response.getETag();
+			this.oldestUpdate = oldestUpdate;
+		}
+
+		boolean hasMore(int page) {
+			return totalPages >= 0 ? page < totalPages : next != null;
+		}
+	}
+
+	private static boolean isNewer(String timestamp, String than) {
+		if (than == null)
+			return true;
+		try {
+			return OffsetDateTime.parse(timestamp).isAfter(OffsetDateTime.parse(than));
+		} catch (DateTimeParseException e) {
+			return timestamp.compareTo(than) > 0;
+		}
+	}
+
+	private CompletableFuture<List<GitlabUser>> refreshMembers(boolean inGroup) {
 		String typeName = inGroup ? "group" : "project";
 		StringBuilder sb = new StringBuilder(serverUrl)
 				.append(API_SUFFIX).append("/")
 				.append(typeName).append("s/")
 				.append(inGroup ? glProject.getNamespace().getId() : glProject.getId())
 				.append("/members");
-		boolean successful = RestUtil.GET(sb.toString(), token, "Loading " + typeName + " members ...", response -> {
-			List<GitlabUser> users = em.extractUsers(response);
-			users.forEach(glProject::addMember);
+
+		// members hardly ever change, so rely on the cache for a while and revalidate it afterwards
+		MembersCache cache = MembersCache.forServer(serverUrl);
+		String key = MembersCache.key(inGroup, inGroup ? glProject.getNamespace().getId() : glProject.getId());
+		MembersCache.Entry cached = cache.get(key);
+		long ttl = TimeUnit.MINUTES.toMillis(lab.getMembersCacheTtl());
+		if (cached != null && cached.isFresh(ttl))
+			return CompletableFuture.completedFuture(cached.users);
+
+		String etag = cached != null ? cached.etag : null;
+		return RestUtil.GET(transport, sb.toString(), token, etag, "Loading " + typeName + " members ...", response -> {
+			if (response.isNotModified()) {
+				cached.revalidated();
+				return cached.users;
+			}
+			List<GitlabUser> users = new ArrayList<>();
+			em.streamUsers(response.getReader(), users::add);
+			cache.put(key, Collections.unmodifiableList(users), response.getETag());
+			return users;
 		});
-		return successful;
 	}
 
+	/**
+	 * Tells whether the issues are visible to the user, who is interested in recent changes then.
+	 */
+	public void setIssuesShown(boolean shown) {
+		scheduler.setShown(shown);
+	}
+
+	/**
+	 * @return a filter for the issues containing all words of the given text in their id, summary, description,
+	 * labels or assignee
+	 */
+	public Predicate<GitlabIssue> search(String text) {
+		return index.search(text);
+	}
+
+	/**
+	 * @return all labels used by the issues of the project
+	 */
+	public LabelDictionary getLabels() {
+		return em.getLabels();
+	}
+
+	/**
+	 * @return the issues as published the last time (the list must not be modified)
+	 */
 	public List<GitlabIssue> getIssues() {
-		return issues;
+		return store.getSnapshot().issues;
 	}
 
-	public void performIssueTransition(GitlabIssue issue, GitlabIssue.Transition transition) {
+	/**
+	 * Changes the state of the issue and its local task right away. The server is updated in the background; if it
+	 * does not accept the change, the transition is rolled back. The task of a closed issue is only dropped once the
+	 * server has confirmed the change, so it can be restored otherwise.
+	 */
+	public void performIssueTransition(GitlabIssue shown, GitlabIssue.Transition transition) {
+		// published issues are copies, so change the issue of the working set
+		GitlabIssue issue = store.get(shown.getId());
+		if (issue == null)
+			return;
+		GitlabIssue.State stateBefore = issue.getState();
+		LocalTask taskBefore = issue.getTask();
 		boolean openBefore = issue.isOpenOrActive();
-		issue.performTransition(transition);
-		boolean openAfter = issue.isOpenOrActive();
-		if (openBefore != openAfter) {
+		applyTransition(issue, transition);
+		if (openBefore != issue.isOpenOrActive()) {
 			// only notify server if a relevant state change has occurred
-			String uri = buildUri(issue);
-			if (openAfter) {
-				// reopen issue on server
-				RestUtil.PUT(uri, token, new Params("state_event", "reopen"), "Reopening issue ...", null);
-			} else {
-				// close issue on server
-				RestUtil.PUT(uri, token, new Params("state_event", "close"), "Closing issue ...", null);
-			}
+			writes.changeState(issue, stateBefore, taskBefore);
 		}
+		publishIssues(ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC));
+	}
+
+	private void applyTransition(GitlabIssue issue, GitlabIssue.Transition transition) {
+		issue.performTransition(transition);
+		store.touch(issue);
 
 		// remember activated issue
 		if (issue.getState() == GitlabIssue.State.ACTIVE) {
 			if (!issue.equals(activeIssue)) {
 				if (activeIssue != null) {
-					// stop current active issue
-					performIssueTransition(activeIssue, GitlabIssue.Transition.ACTIVE_TO_OPEN);
+					// stop current active issue (it stays open, so there is nothing to tell the server)
+					applyTransition(activeIssue, GitlabIssue.Transition.ACTIVE_TO_OPEN);
 				}
 				activeIssue = issue;
 			}
@@ -243,11 +913,27 @@ public class GitlabClient {
 				lab.issueActivated(issue);
 				break;
 			case CLOSED:
-				lab.issueClosed(issue);
+				// the task is kept until the server has confirmed the change, see closeConfirmed()
+				if (transition.from() == GitlabIssue.State.ACTIVE) {
+					lab.issueStopped(issue);
+				}
 				break;
 		}
 	}
 
+	/**
+	 * The server has closed the issue, so its task is not needed anymore. Must be called on the event dispatch
+	 * thread, since the user is asked whether to remove the task.
+	 */
+	private void closeConfirmed(GitlabIssue issue) {
+		// the issue may have been reopened in the meantime
+		if (!issue.isClosed() || issue.getTask() == null)
+			return;
+		lab.issueClosed(issue);
+		store.touch(issue);
+		publishIssues(ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC));
+	}
+
 	public void modifyIssue(GitlabIssue issue, boolean bug, String summary, String description, String labels, GitlabUser assignee) {
 		Params msg = new Params();
 
@@ -256,23 +942,86 @@ public class GitlabClient {
 		if (!description.equals(issue.getDescription()))
 			msg.add("description", description);
 
-		String oldLabels = GitlabIssue.getCompleteLabelsText(issue.getLabels(), issue.isBug());
+		String oldLabels = issue.getCompleteLabelsText();
 		String newLabels = GitlabIssue.getCompleteLabelsText(labels, bug);
-		if (!oldLabels.equals(newLabels))
+		if (!oldLabels.equals(newLabels)) {
 			if ("".equals(newLabels))
 				newLabels = "\"\"";
 			msg.add("labels", newLabels);
+		}
 
-		if (issue.getAssignedTo() != assignee) {
+		if (!Objects.equals(issue.getAssignedTo(), assignee)) {
 			int assigneeId = assignee == null ? -1 : assignee.getId();
 			msg.add("assignee_id", String.valueOf(assigneeId));
 		}
 
-		RestUtil.PUT(buildUri(issue), token, msg, "Updating issue ...", response -> {
-			em.extractIssue(response);
+		// the issue shown is a copy, which is kept as it is
+		GitlabIssue known = store.get(issue.getId());
+		if (!msg.isEmpty() && known != null) {
+			writes.update(known, msg);
+		}
+	}
+
+	private CompletableFuture<?> writeIssue(GitlabIssue issue, Params params) {
+		return RestUtil.PUT(transport, buildUri(issue), token, params, "Updating issue ...", response -> {
+			mergeIssue(em.extractIssue(response.getReader()));
+			return null;
+		}).thenRun(() -> {
+			publishIssues(ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC));
+			if ("close".equals(params.get("state_event"))) {
+				ApplicationManager.getApplication().invokeLater(() -> closeConfirmed(issue));
+			}
 		});
 	}
 
+	/**
+	 * The server has not accepted a change (the user has already been notified about the cause), so bring the issue
+	 * back in line with the server. A cancelled request may have reached the server nevertheless, so the issue is
+	 * reloaded instead of reverting its state.
+	 */
+	private void writeFailed(GitlabIssue issue, Params params, @Nullable GitlabIssue.State stateBefore,
+							 @Nullable LocalTask taskBefore, Throwable t) {
+		boolean cancelled = isCancellation(t);
+		// a later change of the issue is still on its way and decides about the state
+		if (!cancelled && stateBefore != null && !writes.hasPending(issue)) {
+			ApplicationManager.getApplication().invokeLater(() -> rollbackTransition(issue, stateBefore, taskBefore));
+		}
+
+		if (cancelled || !new Params().merge(params).remove("state_event").isEmpty()) {
+			RestUtil.GET(transport, buildUri(issue), token, "Reloading issue ...", response -> {
+				mergeIssue(em.extractIssue(response.getReader()));
+				return null;
+			}).thenRun(() -> publishIssues(ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC)));
+		}
+	}
+
+	private static boolean isCancellation(Throwable t) {
+		for (; t != null; t = t.getCause()) {
+			if (t instanceof CancellationException || t instanceof ProcessCanceledException)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Brings back the state and the task the issue had before the failed change.
+	 */
+	private void rollbackTransition(GitlabIssue issue, GitlabIssue.State state, @Nullable LocalTask task) {
+		GitlabIssue.Transition rollback = GitlabIssue.Transition.between(issue.getState(), state);
+		if (rollback == null)
+			return;
+		applyTransition(issue, rollback);
+		// e.g. a task created when the issue has been reopened and started
+		if (issue.getTask() != task) {
+			lab.restoreTask(issue, task);
+			store.touch(issue);
+		}
+		publishIssues(ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC));
+		Notifications.Bus.notify(new Notification("GitLab", "Issue state reverted",
+				"GitLab has not accepted the state change of issue #" + issue.getLocalId() + ", so it is " + state +
+						" again.", NotificationType.WARNING), ijProject);
+	}
+
 	public void createIssue(boolean bug, String summary, String description, String labels, GitlabUser assignee) {
 		Params msg = new Params();
 		msg.add("title", summary);
@@ -287,14 +1036,10 @@ public class GitlabClient {
 			msg.add("assignee_id", String.valueOf(assignee.getId()));
 		}
 
-		RestUtil.POST(buildUri(null), token, msg, "Creating issue ...", response -> {
-			GitlabIssue issue = em.extractIssue(response);
-			issues.add(0, issue);
-			issuesById.put(issue.getId(), issue);
-
-			IssuesLoadedNotifier notifier = ijProject.getMessageBus().syncPublisher(ISSUES_LOADED_TOPIC);
-			notifier.accept(issues);
-		});
+		RestUtil.POST(transport, buildUri(null), token, msg, "Creating issue ...", response -> {
+			mergeIssue(em.extractIssue(response.getReader()));
+			return null;
+		}).thenRun(() -> publishIssues(ijProject.getMessageBus().syncPublisher(ISSUES_CHANGED_TOPIC)));
 	}
 
 
@@ -304,16 +1049,22 @@ public class GitlabClient {
 				.append("/projects/")
 				.append(glProject.getId())
 				.append("/issues");
-		if (issue == null) {
-			sb.append("?per_page=100");
-		} else {
+		if (issue != null) {
 			sb.append("/").append(issue.getId());
 		}
 		return sb.toString();
 	}
 
+	private String buildIssueUri(int issueId) {
+		return buildUri(null) + "/" + issueId;
+	}
+
+	private String buildPageUri(Params query, int page) {
+		return buildUri(null) + "?" + query.format() + "&page=" + page;
+	}
+
 
 	@FunctionalInterface
-	public static interface IssuesLoadedNotifier extends Consumer<List<GitlabIssue>> {
+	public static interface IssuesChangedNotifier extends Consumer<IssueChangeSet> {
 	}
 }
@@ -2,12 +2,17 @@ package eu.broth.intellilab.model;
 
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.intellij.tasks.LocalTask;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.IntFunction;
 
 /**
  * @author Bastian Roth
@@ -15,8 +20,6 @@ import java.util.List;
  */
 public class GitlabIssue extends GitlabEntity<GitlabIssue> {
 
-	private static final String BUG = "bug";
-
 	@SerializedName("iid")
 	private int localId;
 
@@ -25,7 +28,9 @@ public class GitlabIssue extends GitlabEntity<GitlabIssue> {
 	@SerializedName("title")
 	private String summary;
 
-	private String[] labels;
+	// labels (including the bug label) as bits of the project's label dictionary
+	BitSet labelBits = new BitSet();
+	private LabelDictionary dictionary;
 
 	@SerializedName("assignee")
 	private GitlabUser assignedTo;
@@ -35,19 +40,40 @@ public class GitlabIssue extends GitlabEntity<GitlabIssue> {
 
 	private String description;
 
-	@Expose
-	private boolean labelsCleaned;
+	// title of the milestone
+	private String milestone;
 
-	@Expose
-	private boolean bug;
+	@SerializedName("updated_at")
+	private String updatedAt;
 
 	@Expose
 	LocalTask task;
 
+	// display texts, cached since they are requested on every repaint
+	private String localIdText;
+	private String labelsText;
+
+	// fields changed since the issue has been published the last time
+	private final Set<Field> changes = EnumSet.noneOf(Field.class);
+	// whether changes are on their way to the server, which does not know the local state yet
+	private volatile boolean unconfirmed;
+
 	public int getLocalId() {
 		return localId;
 	}
 
+	/**
+	 * @return the local id as shown to the user, e.g. <code>#42</code>
+	 */
+	public String getLocalIdText() {
+		String text = localIdText;
+		if (text == null) {
+			text = "#" + localId;
+			localIdText = text;
+		}
+		return text;
+	}
+
 	public String getSummary() {
 		return summary;
 	}
@@ -58,6 +84,7 @@ public class GitlabIssue extends GitlabEntity<GitlabIssue> {
 	}
 
 	private void setState(State state) {
+		track(Field.STATE, getState(), state);
 		this.state = state.toString();
 	}
 
@@ -73,27 +100,23 @@ public class GitlabIssue extends GitlabEntity<GitlabIssue> {
 		return getState() == State.CLOSED;
 	}
 
-	void performTransition(Transition transition) {
-		switch (transition) {
-			case OPEN_TO_ACTIVE:
-				setState(State.ACTIVE);
-				break;
-			case OPEN_TO_CLOSE:
-				setState(State.CLOSED);
-				break;
-			case ACTIVE_TO_OPEN:
-				setState(State.OPEN);
-				break;
-			case ACTIVE_TO_CLOSE:
-				setState(State.CLOSED);
-				break;
-			case CLOSE_TO_OPEN:
-				setState(State.OPEN);
-				break;
-			case CLOSE_TO_ACTIVE:
-				setState(State.ACTIVE);
-				break;
-		}
+	synchronized void performTransition(Transition transition) {
+		setState(transition.to);
+	}
+
+	/**
+	 * Tells whether changes of the issue are on their way to the server. The local state is kept meanwhile, since the
+	 * state the server knows is outdated.
+	 */
+	void setUnconfirmed(boolean unconfirmed) {
+		this.unconfirmed = unconfirmed;
+	}
+
+	/**
+	 * @return whether the state of the server may replace the local one (the active state is only known locally)
+	 */
+	private boolean acceptsServerState() {
+		return State.get(state) != State.ACTIVE && !unconfirmed;
 	}
 
 	public List<Transition> getPossibleTransitions() {
@@ -120,32 +143,67 @@ public class GitlabIssue extends GitlabEntity<GitlabIssue> {
 
 
 	public boolean isBug() {
-		cleanUpLabels();
-		return bug;
+		return labelBits.get(dictionary.bugId());
 	}
 
-	public String[] getLabels() {
-		cleanUpLabels();
-		return labels;
+	/**
+	 * @return whether the issue has all of the given labels
+	 * @see LabelDictionary#bits(Collection)
+	 */
+	public boolean hasAllLabels(BitSet labels) {
+		for (int id = labels.nextSetBit(0); id >= 0; id = labels.nextSetBit(id + 1)) {
+			if (!labelBits.get(id))
+				return false;
+		}
+		return true;
 	}
 
-	public String getLabelsText() {
-		return getLabelsText(Arrays.asList(getLabels()));
+	/**
+	 * @return whether the issue has at least one of the given labels
+	 * @see LabelDictionary#bits(Collection)
+	 */
+	public boolean hasAnyLabel(BitSet labels) {
+		return labelBits.intersects(labels);
 	}
 
-	private void cleanUpLabels() {
-		if (!labelsCleaned) {
-			labelsCleaned = true;
-			List result = new LinkedList();
-			for (String label : labels) {
-				if (!BUG.equals(label)) {
-					result.add(label);
-				} else {
-					bug = true;
-				}
+	/**
+	 * @return all labels but the bug label
+	 */
+	public String[] getLabels() {
+		List<String> labels = new ArrayList<>(labelBits.cardinality());
+		int bugId = dictionary.bugId();
+		for (int id = labelBits.nextSetBit(0); id >= 0; id = labelBits.nextSetBit(id + 1)) {
+			if (id != bugId) {
+				labels.add(dictionary.label(id));
 			}
-			labels = (String[]) result.toArray(new String[0]);
 		}
+		return labels.toArray(new String[labels.size()]);
+	}
+
+	public String getLabelsText() {
+		String text = labelsText;
+		if (text == null) {
+			text = String.join(", ", getLabels());
+			labelsText = text;
+		}
+		return text;
+	}
+
+	/**
+	 * @return all labels, where the bug label comes first
+	 */
+	private String[] getCompleteLabels() {
+		String[] labels = getLabels();
+		if (!isBug())
+			return labels;
+		String[] complete = new String[labels.length + 1];
+		complete[0] = LabelDictionary.BUG;
+		System.arraycopy(labels, 0, complete, 1, labels.length);
+		return complete;
+	}
+
+	public String getCompleteLabelsText() {
+		return String.join(", ", getCompleteLabels());
 	}
 
 	public GitlabUser getAssignedTo() {
@@ -160,22 +218,142 @@ public class GitlabIssue extends GitlabEntity<GitlabIssue> {
 		return description;
 	}
 
+	public String getMilestone() {
+		return milestone;
+	}
+
+	public String getUpdatedAt() {
+		return updatedAt;
+	}
+
 	public LocalTask getTask() {
 		return task;
 	}
 
+	public synchronized void setTask(@Nullable LocalTask task) {
+		track(Field.TASK, this.task, task);
+		this.task = task;
+	}
+
+	/**
+	 * Associates the issue with its local task, which decides about whether the issue is open or active.
+	 */
+	public synchronized void attachTask(LocalTask task) {
+		setTask(task);
+		setState(task.isActive() ? State.ACTIVE : State.OPEN);
+	}
+
+	/**
+	 * @return a copy of the current state, which is not affected by later changes of this issue
+	 */
+	synchronized GitlabIssue copy() {
+		GitlabIssue copy = new GitlabIssue();
+		copy.id = id;
+		copy.localId = localId;
+		copy.state = state;
+		copy.summary = summary;
+		// label bits are replaced as a whole, but never changed
+		copy.labelBits = labelBits;
+		copy.dictionary = dictionary;
+		copy.assignedTo = assignedTo;
+		copy.createdBy = createdBy;
+		copy.description = description;
+		copy.milestone = milestone;
+		copy.updatedAt = updatedAt;
+		copy.task = task;
+		copy.localIdText = localIdText;
+		copy.labelsText = labelsText;
+		return copy;
+	}
+
+	/**
+	 * Takes over the fields of a newly parsed issue, which are all changed at once as far as {@link #copy()} is
+	 * concerned. Fields which have really changed are tracked for the next publication.
+	 */
 	@Override
-	void merge(GitlabIssue other) {
-		if (State.get(state) != State.ACTIVE) {
+	synchronized void merge(GitlabIssue other) {
+		if (localId != other.localId) {
+			localId = other.localId;
+			localIdText = null;
+		}
+		// the local state must not be overridden by the server
+		if (acceptsServerState()) {
+			track(Field.STATE, getState(), other.getState());
 			state = other.state;
 		}
+		track(Field.SUMMARY, summary, other.summary);
 		summary = other.summary;
+		track(Field.DESCRIPTION, description, other.description);
 		description = other.description;
-		labels = other.labels;
-		labelsCleaned = false;
-		bug = other.isBug();
+		if (!labelBits.equals(other.labelBits)) {
+			markChanged(Field.LABELS);
+		}
+		labelBits = other.labelBits;
+		labelsText = null;
+		track(Field.ASSIGNEE, assignedTo, other.assignedTo);
 		assignedTo = other.assignedTo;
+		track(Field.AUTHOR, createdBy, other.createdBy);
 		createdBy = other.createdBy;
+		milestone = other.milestone;
+		updatedAt = other.updatedAt;
+	}
+
+	private void track(Field field, Object oldValue, Object newValue) {
+		if (!Objects.equals(oldValue, newValue)) {
+			markChanged(field);
+		}
+	}
+
+	synchronized void markChanged(Field field) {
+		changes.add(field);
+	}
+
+	/**
+	 * @return the fields changed since the last call
+	 */
+	synchronized Set<Field> takeChanges() {
+		if (changes.isEmpty())
+			return Collections.emptySet();
+		Set<Field> taken = EnumSet.copyOf(changes);
+		changes.clear();
+		return taken;
+	}
+
+	void writeTo(DataOutput out) throws IOException {
+		out.writeInt(id);
+		out.writeInt(localId);
+		IssueSnapshot.writeString(out, state);
+		IssueSnapshot.writeString(out, summary);
+		String[] labels = getCompleteLabels();
+		out.writeInt(labels.length);
+		for (String label : labels) {
+			IssueSnapshot.writeString(out, label);
+		}
+		out.writeInt(assignedTo == null ? 0 : assignedTo.getId());
+		out.writeInt(createdBy == null ? 0 : createdBy.getId());
+		IssueSnapshot.writeString(out, description);
+		IssueSnapshot.writeString(out, milestone);
+		IssueSnapshot.writeString(out, updatedAt);
+	}
+
+	void readFrom(DataInput in, IntFunction<GitlabUser> users) throws IOException {
+		localId = in.readInt();
+		localIdText = null;
+		state = IssueSnapshot.readString(in);
+		summary = IssueSnapshot.readString(in);
+		String[] labels = new String[IssueSnapshot.readCount(in)];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = IssueSnapshot.readString(in);
+		}
+		labelBits = dictionary.intern(labels);
+		labelsText = null;
+		int assigneeId = in.readInt();
+		assignedTo = assigneeId == 0 ? null : users.apply(assigneeId);
+		int authorId = in.readInt();
+		createdBy = authorId == 0 ? null : users.apply(authorId);
+		description = IssueSnapshot.readString(in);
+		milestone = IssueSnapshot.readString(in);
+		updatedAt = IssueSnapshot.readString(in);
 	}
 
 	@Override
@@ -198,8 +376,10 @@ public class GitlabIssue extends GitlabEntity<GitlabIssue> {
 			return text;
 		}
 
+		private static final State[] VALUES = values();
+
 		public static State get(String text) {
-			for (State state : values()) {
+			for (State state : VALUES) {
 				if (state.toString().equals(text))
 					return state;
 			}
@@ -208,15 +388,42 @@ public class GitlabIssue extends GitlabEntity<GitlabIssue> {
 	}
 
 
+	/**
+	 * Fields of an issue which may change, which are all shown to the user except for the task.
+	 */
+	public static enum Field {
+		STATE, SUMMARY, LABELS, ASSIGNEE, AUTHOR, DESCRIPTION, TASK
+	}
+
+
 	public static enum Transition {
-		OPEN_TO_ACTIVE("Start"), OPEN_TO_CLOSE("Close"),
-		ACTIVE_TO_OPEN("Stop"), ACTIVE_TO_CLOSE("Stop & Close"),
-		CLOSE_TO_OPEN("Reopen"), CLOSE_TO_ACTIVE("Reopen & Start");
+		OPEN_TO_ACTIVE("Start", State.OPEN, State.ACTIVE), OPEN_TO_CLOSE("Close", State.OPEN, State.CLOSED),
+		ACTIVE_TO_OPEN("Stop", State.ACTIVE, State.OPEN), ACTIVE_TO_CLOSE("Stop & Close", State.ACTIVE, State.CLOSED),
+		CLOSE_TO_OPEN("Reopen", State.CLOSED, State.OPEN), CLOSE_TO_ACTIVE("Reopen & Start", State.CLOSED, State.ACTIVE);
 
 		private String text;
+		private State from;
+		private State to;
 
-		Transition(String text) {
+		Transition(String text, State from, State to) {
 			this.text = text;
+			this.from = from;
+			this.to = to;
+		}
+
+		public State from() {
+			return from;
+		}
+
+		/**
+		 * @return the transition leading from one state to the other or null if both states are the same
+		 */
+		public static Transition between(State from, State to) {
+			for (Transition transition : values()) {
+				if (transition.from == from && transition.to == to)
+					return transition;
+			}
+			return null;
 		}
 
 		@Override
@@ -226,28 +433,107 @@ public class GitlabIssue extends GitlabEntity<GitlabIssue> {
 	}
 
 
-	public static String getCompleteLabelsText(String labels, boolean bug) {
-		labels = labels.trim();
-		if (bug) {
-			return labels.isEmpty() ? "bug" : "bug, " + labels;
+	static class Adapter extends EntityAdapter<GitlabIssue> {
+
+		private final GitlabUser.Adapter users;
+		private final LabelDictionary dictionary;
+
+		Adapter(GitlabUser.Adapter users, LabelDictionary dictionary) {
+			this.users = users;
+			this.dictionary = dictionary;
 		}
-		return labels;
-	}
 
-	public static String getCompleteLabelsText(String[] labels, boolean bug) {
-		List<String> list = new ArrayList<>(Arrays.asList(labels));
-		if (bug) {
-			list.add(0, BUG);
+		@Override
+		GitlabIssue create() {
+			GitlabIssue issue = new GitlabIssue();
+			issue.dictionary = dictionary;
+			return issue;
+		}
+
+		@Override
+		void readField(GitlabIssue issue, String name, JsonReader in) throws IOException {
+			switch (name) {
+				case "iid":
+					issue.localId = nextInt(in);
+					break;
+				case "state":
+					issue.state = nextString(in);
+					break;
+				case "title":
+					issue.summary = nextString(in);
+					break;
+				case "labels":
+					issue.labelBits = dictionary.intern(nextStringArray(in));
+					break;
+				case "assignee":
+					issue.assignedTo = users.read(in);
+					break;
+				case "author":
+					issue.createdBy = users.read(in);
+					break;
+				case "description":
+					issue.description = nextString(in);
+					break;
+				case "milestone":
+					issue.milestone = nextMilestoneTitle(in);
+					break;
+				case "updated_at":
+					issue.updatedAt = nextString(in);
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+
+		/**
+		 * Milestones are only needed for filtering, so just their title is kept.
+		 */
+		private static String nextMilestoneTitle(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			String title = null;
+			in.beginObject();
+			while (in.hasNext()) {
+				if ("title".equals(in.nextName())) {
+					title = nextString(in);
+				} else {
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			return title;
 		}
-		return getLabelsText(list);
-	}
 
-	public static String getLabelsText(List<String> labels) {
-		return labels.stream().reduce("", (lab1, lab2) -> {
-			if (!lab1.isEmpty()) {
-				return lab1 + ", " + lab2;
+		@Override
+		void writeFields(JsonWriter out, GitlabIssue issue) throws IOException {
+			out.name("iid").value(issue.localId);
+			out.name("state").value(issue.state);
+			out.name("title").value(issue.summary);
+			out.name("labels");
+			writeStringArray(out, issue.getCompleteLabels());
+			out.name("assignee");
+			users.write(out, issue.assignedTo);
+			out.name("author");
+			users.write(out, issue.createdBy);
+			out.name("description").value(issue.description);
+			out.name("milestone");
+			if (issue.milestone == null) {
+				out.nullValue();
+			} else {
+				out.beginObject().name("title").value(issue.milestone).endObject();
 			}
-			return lab2;
-		});
+			out.name("updated_at").value(issue.updatedAt);
+		}
+	}
+
+
+	public static String getCompleteLabelsText(String labels, boolean bug) {
+		labels = labels.trim();
+		if (bug) {
+			return labels.isEmpty() ? LabelDictionary.BUG : LabelDictionary.BUG + ", " + labels;
+		}
+		return labels;
 	}
 }
@@ -1,6 +1,10 @@
 package eu.broth.intellilab.model;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 
 /**
  * @author Bastian Roth
@@ -19,4 +23,27 @@ public class GitlabNamespace extends GitlabEntity<GitlabNamespace> {
 	void merge(GitlabNamespace other) {
 		this.ownerId = other.ownerId;
 	}
+
+
+	static class Adapter extends EntityAdapter<GitlabNamespace> {
+
+		@Override
+		GitlabNamespace create() {
+			return new GitlabNamespace();
+		}
+
+		@Override
+		void readField(GitlabNamespace namespace, String name, JsonReader in) throws IOException {
+			if ("owner_id".equals(name)) {
+				namespace.ownerId = nextInt(in);
+			} else {
+				in.skipValue();
+			}
+		}
+
+		@Override
+		void writeFields(JsonWriter out, GitlabNamespace namespace) throws IOException {
+			out.name("owner_id").value(namespace.ownerId);
+		}
+	}
 }
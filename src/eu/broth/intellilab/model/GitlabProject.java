@@ -2,9 +2,13 @@ package eu.broth.intellilab.model;
 
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -19,7 +23,7 @@ public class GitlabProject extends GitlabEntity<GitlabProject> {
 	private GitlabNamespace namespace;
 
 	@Expose
-	private List<GitlabUser> members = new LinkedList<>();
+	private volatile List<GitlabUser> members = Collections.emptyList();
 
 	public GitlabProject() {
 	}
@@ -38,24 +42,63 @@ public class GitlabProject extends GitlabEntity<GitlabProject> {
 	}
 
 	public List<GitlabUser> getMembers() {
-		return Collections.unmodifiableList(members);
+		return members;
 	}
 
-	void clearMembers() {
-		members.clear();
-	}
-
-	void addMember(GitlabUser user) {
-		members.add(user);
+	/**
+	 * Replaces all members at once, so readers never see a partially loaded member list.
+	 */
+	void setMembers(Collection<GitlabUser> users) {
+		members = Collections.unmodifiableList(new ArrayList<>(users));
 	}
 
 	@Override
 	void merge(GitlabProject other) {
 		fullName = other.fullName;
+		if (other.namespace != null) {
+			namespace = other.namespace;
+		}
 	}
 
 	@Override
 	public String toString() {
 		return getFullName();
 	}
+
+
+	static class Adapter extends EntityAdapter<GitlabProject> {
+
+		private final GitlabNamespace.Adapter namespaces;
+
+		Adapter(GitlabNamespace.Adapter namespaces) {
+			this.namespaces = namespaces;
+		}
+
+		@Override
+		GitlabProject create() {
+			return new GitlabProject();
+		}
+
+		@Override
+		void readField(GitlabProject project, String name, JsonReader in) throws IOException {
+			switch (name) {
+				case "name_with_namespace":
+					project.fullName = nextString(in);
+					break;
+				case "namespace":
+					project.namespace = namespaces.read(in);
+					break;
+				default:
+					// members are not part of the API response and are always reloaded
+					in.skipValue();
+			}
+		}
+
+		@Override
+		void writeFields(JsonWriter out, GitlabProject project) throws IOException {
+			out.name("name_with_namespace").value(project.fullName);
+			out.name("namespace");
+			namespaces.write(out, project.namespace);
+		}
+	}
 }
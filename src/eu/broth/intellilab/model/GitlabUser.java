@@ -1,5 +1,12 @@
 package eu.broth.intellilab.model;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * @author Bastian Roth
  * @version 09.04.2014
@@ -24,8 +31,48 @@ public class GitlabUser extends GitlabEntity<GitlabUser> {
 		name = other.name;
 	}
 
+	void writeTo(DataOutput out) throws IOException {
+		out.writeInt(id);
+		IssueSnapshot.writeString(out, username);
+		IssueSnapshot.writeString(out, name);
+	}
+
+	void readFrom(DataInput in) throws IOException {
+		username = IssueSnapshot.readString(in);
+		name = IssueSnapshot.readString(in);
+	}
+
 	@Override
 	public String toString() {
 		return name;
 	}
+
+
+	static class Adapter extends EntityAdapter<GitlabUser> {
+
+		@Override
+		GitlabUser create() {
+			return new GitlabUser();
+		}
+
+		@Override
+		void readField(GitlabUser user, String name, JsonReader in) throws IOException {
+			switch (name) {
+				case "username":
+					user.username = nextString(in);
+					break;
+				case "name":
+					user.name = nextString(in);
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+
+		@Override
+		void writeFields(JsonWriter out, GitlabUser user) throws IOException {
+			out.name("username").value(user.username);
+			out.name("name").value(user.name);
+		}
+	}
 }
@@ -0,0 +1,85 @@
+package eu.broth.intellilab.model;
+
+import java.util.*;
+
+/**
+ * Describes how the issues have changed since they have been published the last time. Besides the ids of added,
+ * updated and removed issues, it carries the complete, ordered issue list after the changes.
+ *
+ * @version 17.10.2026
+ */
+public class IssueChangeSet {
+
+	private final List<GitlabIssue> issues;
+	private final boolean reset;
+	private final Set<Integer> added;
+	private final Map<Integer, Set<GitlabIssue.Field>> updated;
+	private final Set<Integer> removed;
+
+	IssueChangeSet(List<GitlabIssue> issues, Set<Integer> added, Map<Integer, Set<GitlabIssue.Field>> updated,
+				   Set<Integer> removed) {
+		this(issues, false, added, updated, removed);
+	}
+
+	private IssueChangeSet(List<GitlabIssue> issues, boolean reset, Set<Integer> added,
+						   Map<Integer, Set<GitlabIssue.Field>> updated, Set<Integer> removed) {
+		this.issues = issues;
+		this.reset = reset;
+		this.added = added;
+		this.updated = updated;
+		this.removed = removed;
+	}
+
+	/**
+	 * @return a change set which replaces all issues, e.g. after another project has been loaded
+	 */
+	public static IssueChangeSet reset(List<GitlabIssue> issues) {
+		return new IssueChangeSet(issues, true, Collections.emptySet(), Collections.emptyMap(), Collections.emptySet());
+	}
+
+	/**
+	 * @return all issues after the changes, in the order they are listed
+	 */
+	public List<GitlabIssue> getIssues() {
+		return issues;
+	}
+
+	/**
+	 * @return whether the previous issues have to be dropped altogether, instead of applying the single changes
+	 */
+	public boolean isReset() {
+		return reset;
+	}
+
+	public boolean isAdded(GitlabIssue issue) {
+		return added.contains(issue.getId());
+	}
+
+	public boolean isRemoved(GitlabIssue issue) {
+		return removed.contains(issue.getId());
+	}
+
+	public boolean isUpdated(GitlabIssue issue) {
+		return updated.containsKey(issue.getId());
+	}
+
+	/**
+	 * @return the fields of the issue which have changed (empty if the issue has not been updated)
+	 */
+	public Set<GitlabIssue.Field> getChangedFields(GitlabIssue issue) {
+		return updated.getOrDefault(issue.getId(), Collections.emptySet());
+	}
+
+	Set<Integer> getRemovedIds() {
+		return removed;
+	}
+
+	public boolean isEmpty() {
+		return !reset && added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "IssueChangeSet (added: " + added + ", updated: " + updated.keySet() + ", removed: " + removed + ")";
+	}
+}
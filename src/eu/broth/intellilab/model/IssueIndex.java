@@ -0,0 +1,236 @@
+package eu.broth.intellilab.model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Full text index of the issues for filtering as the user types. Every substring of up to three characters (n-gram)
+ * of an issue's text points to the issues containing it, so a search only intersects a few postings instead of
+ * scanning all texts. Matches of longer search terms are confirmed against the text of the few remaining issues.
+ * <p>
+ * Issues are identified by their local id, which is dense within a project, so the result of a search is a bit set.
+ * Changes only replace the postings of the n-grams which have changed. Postings are never modified once they are in
+ * the index, so searches never wait for changes being applied; a search running meanwhile may still see some of the
+ * previous postings, but the changed issues are filtered again as soon as the changes are published anyway.
+ * <p>
+ * The text of an issue consists of its id (e.g. <code>#42</code>), summary, description, labels and assignee.
+ *
+ * @version 17.10.2026
+ */
+class IssueIndex {
+
+	private static final int GRAM_LENGTH = 3;
+
+	private volatile Content content = new Content();
+	// local id of every issue indexed, only used while changes are applied
+	private final Map<Integer, Integer> localIds = new HashMap<>();
+
+	/**
+	 * Brings the index in line with the published changes.
+	 */
+	synchronized void apply(IssueChangeSet changes) {
+		Content content = this.content;
+		if (changes.isReset()) {
+			// the issues of another project reuse the local ids, so build a new index which replaces this one at once
+			content = new Content();
+			localIds.clear();
+		}
+		Map<String, BitSet> added = new HashMap<>();
+		Map<String, BitSet> removed = new HashMap<>();
+
+		for (GitlabIssue issue : changes.getIssues()) {
+			if (!changes.isReset() && !changes.isAdded(issue) && !changes.isUpdated(issue))
+				continue;
+			int localId = issue.getLocalId();
+			localIds.put(issue.getId(), localId);
+			String text = textOf(issue);
+			String oldText = content.texts.put(localId, text);
+			if (text.equals(oldText))
+				continue;
+			Set<String> grams = gramsOf(text);
+			if (oldText != null) {
+				for (String gram : gramsOf(oldText)) {
+					if (!grams.remove(gram)) {
+						bitsOf(removed, gram).set(localId);
+					}
+				}
+			}
+			for (String gram : grams) {
+				bitsOf(added, gram).set(localId);
+			}
+		}
+		for (int issueId : changes.getRemovedIds()) {
+			Integer localId = localIds.remove(issueId);
+			String oldText = localId == null ? null : content.texts.remove(localId);
+			if (oldText != null) {
+				for (String gram : gramsOf(oldText)) {
+					bitsOf(removed, gram).set(localId);
+				}
+			}
+		}
+
+		// only the postings of n-grams which have changed are replaced
+		Set<String> grams = new HashSet<>(added.keySet());
+		grams.addAll(removed.keySet());
+		for (String gram : grams) {
+			Posting posting = content.postings.get(gram);
+			BitSet bits = posting == null ? new BitSet() : posting.toBits();
+			if (removed.containsKey(gram)) {
+				bits.andNot(removed.get(gram));
+			}
+			if (added.containsKey(gram)) {
+				bits.or(added.get(gram));
+			}
+			if (bits.isEmpty()) {
+				content.postings.remove(gram);
+			} else {
+				content.postings.put(gram, Posting.of(bits));
+			}
+		}
+		this.content = content;
+	}
+
+	private static BitSet bitsOf(Map<String, BitSet> postings, String gram) {
+		return postings.computeIfAbsent(gram, key -> new BitSet());
+	}
+
+	/**
+	 * @return a filter accepting all issues which contain every whitespace separated term of the query (ignoring
+	 * case), evaluated against the current state of the index
+	 */
+	Predicate<GitlabIssue> search(String query) {
+		Content content = this.content;
+		String[] terms = query.toLowerCase(Locale.ROOT).trim().split("\\s+");
+		BitSet matches = null;
+		for (String term : terms) {
+			if (term.isEmpty())
+				continue;
+			matches = content.candidates(term, matches);
+			if (term.length() > GRAM_LENGTH) {
+				// the n-grams only narrow down the issues, whether the term really occurs has to be checked
+				for (int localId = matches.nextSetBit(0); localId >= 0; localId = matches.nextSetBit(localId + 1)) {
+					String text = content.texts.get(localId);
+					if (text == null || !text.contains(term)) {
+						matches.clear(localId);
+					}
+				}
+			}
+		}
+		if (matches == null)
+			return issue -> true;
+
+		BitSet result = matches;
+		return issue -> result.get(issue.getLocalId());
+	}
+
+	private static Set<String> gramsOf(String text) {
+		// sized for all substrings, so the set is never rehashed
+		Set<String> grams = new HashSet<>(text.length() * GRAM_LENGTH * 4 / 3 + 1);
+		for (int i = 0; i < text.length(); i++) {
+			for (int length = 1; length <= GRAM_LENGTH && i + length <= text.length(); length++) {
+				grams.add(text.substring(i, i + length));
+			}
+		}
+		return grams;
+	}
+
+	private static String textOf(GitlabIssue issue) {
+		StringBuilder sb = new StringBuilder()
+				.append(issue.getLocalIdText()).append('\n')
+				.append(issue.getSummary()).append('\n')
+				.append(issue.getCompleteLabelsText()).append('\n');
+		if (issue.getDescription() != null) {
+			sb.append(issue.getDescription()).append('\n');
+		}
+		if (issue.getAssignedTo() != null) {
+			sb.append(issue.getAssignedTo().getName());
+		}
+		return sb.toString().toLowerCase(Locale.ROOT);
+	}
+
+
+	/**
+	 * Texts and postings of the indexed issues by local id.
+	 */
+	private static class Content {
+		final Map<Integer, String> texts = new ConcurrentHashMap<>();
+		final Map<String, Posting> postings = new ConcurrentHashMap<>();
+
+		/**
+		 * @param matches the issues matching the previous terms (changed in place) or null if there are none
+		 * @return the issues which may contain the term and the previous terms
+		 */
+		BitSet candidates(String term, BitSet matches) {
+			if (term.length() <= GRAM_LENGTH)
+				return intersect(matches, postings.get(term));
+			for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+				matches = intersect(matches, postings.get(term.substring(i, i + GRAM_LENGTH)));
+				if (matches.isEmpty())
+					break;
+			}
+			return matches;
+		}
+
+		private static BitSet intersect(BitSet matches, Posting posting) {
+			if (posting == null)
+				return new BitSet();
+			if (matches == null)
+				return posting.toBits();
+			posting.retainIn(matches);
+			return matches;
+		}
+	}
+
+
+	/**
+	 * The issues containing an n-gram, kept as sorted local ids while there are only a few of them and as bits
+	 * otherwise. Never changed once created.
+	 */
+	private static class Posting {
+		private final int[] ids;
+		private final BitSet bits;
+
+		private Posting(int[] ids, BitSet bits) {
+			this.ids = ids;
+			this.bits = bits;
+		}
+
+		static Posting of(BitSet bits) {
+			if (bits.cardinality() * Integer.SIZE < bits.length())
+				return new Posting(bits.stream().toArray(), null);
+			return new Posting(null, bits);
+		}
+
+		/**
+		 * @return new bits of the issues, which may be changed
+		 */
+		BitSet toBits() {
+			if (bits != null)
+				return (BitSet) bits.clone();
+			BitSet result = new BitSet();
+			for (int id : ids) {
+				result.set(id);
+			}
+			return result;
+		}
+
+		/**
+		 * Removes all issues from the given bits which are not part of this posting.
+		 */
+		void retainIn(BitSet matches) {
+			if (bits != null) {
+				matches.and(bits);
+				return;
+			}
+			int previous = -1;
+			for (int id : ids) {
+				if (previous + 1 < id) {
+					matches.clear(previous + 1, id);
+				}
+				previous = id;
+			}
+			matches.clear(previous + 1, Math.max(previous + 1, matches.length()));
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package eu.broth.intellilab.model;
+
+import eu.broth.intellilab.util.Params;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Selection of issues which are shown. It is sent to the server as query parameters, so only the selected issues are
+ * transferred, and evaluated locally against issues which are already known.
+ *
+ * @version 17.10.2026
+ */
+public class IssueQuery {
+
+	/**
+	 * Open and active issues, which is what is needed most of the time.
+	 */
+	public static final IssueQuery DEFAULT = new IssueQuery(Scope.OPEN, Collections.emptyList(), null, null, null);
+
+	private final Scope scope;
+	private final List<String> labels;
+	private final Integer assigneeId;
+	private final String milestone;
+	private final String search;
+
+	private IssueQuery(Scope scope, List<String> labels, Integer assigneeId, String milestone, String search) {
+		this.scope = scope;
+		this.labels = labels;
+		this.assigneeId = assigneeId;
+		this.milestone = milestone;
+		this.search = search;
+	}
+
+	public Scope getScope() {
+		return scope;
+	}
+
+	public List<String> getLabels() {
+		return labels;
+	}
+
+	public Integer getAssigneeId() {
+		return assigneeId;
+	}
+
+	public String getMilestone() {
+		return milestone;
+	}
+
+	public String getSearch() {
+		return search;
+	}
+
+	public IssueQuery withScope(Scope scope) {
+		return new IssueQuery(scope, labels, assigneeId, milestone, search);
+	}
+
+	/**
+	 * @param labels comma separated labels, all of which the issues must have
+	 */
+	public IssueQuery withLabels(String labels) {
+		List<String> list = new ArrayList<>();
+		for (String label : labels.split(",")) {
+			if (!label.trim().isEmpty()) {
+				list.add(label.trim());
+			}
+		}
+		return new IssueQuery(scope, Collections.unmodifiableList(list), assigneeId, milestone, search);
+	}
+
+	public IssueQuery withAssignee(@Nullable GitlabUser assignee) {
+		return new IssueQuery(scope, labels, assignee == null ? null : assignee.getId(), milestone, search);
+	}
+
+	public IssueQuery withMilestone(@Nullable String milestone) {
+		return new IssueQuery(scope, labels, assigneeId, emptyToNull(milestone), search);
+	}
+
+	public IssueQuery withSearch(@Nullable String search) {
+		return new IssueQuery(scope, labels, assigneeId, milestone, emptyToNull(search));
+	}
+
+	private static String emptyToNull(String text) {
+		return text == null || text.trim().isEmpty() ? null : text.trim();
+	}
+
+	/**
+	 * Adds the query parameters understood by GitLab.
+	 */
+	void addTo(Params params) {
+		params.add("state", scope.parameter);
+		if (!labels.isEmpty()) {
+			params.add("labels", String.join(",", labels));
+		}
+		if (assigneeId != null) {
+			params.add("assignee_id", String.valueOf(assigneeId));
+		}
+		if (milestone != null) {
+			params.add("milestone", milestone);
+		}
+		if (search != null) {
+			params.add("search", search);
+		}
+	}
+
+	/**
+	 * @return a filter which does the same as the server, but for the issues already known
+	 */
+	Predicate<GitlabIssue> matcher(LabelDictionary dictionary) {
+		BitSet labelBits = dictionary.bits(labels);
+		// a label which is not used by any issue yet cannot match
+		boolean labelsKnown = labelBits.cardinality() == labels.size();
+		String searchText = search == null ? null : search.toLowerCase(Locale.ROOT);
+		return issue -> {
+			if (scope == Scope.OPEN && issue.isClosed() || scope == Scope.CLOSED && !issue.isClosed())
+				return false;
+			if (!labels.isEmpty() && (!labelsKnown || !issue.hasAllLabels(labelBits)))
+				return false;
+			if (assigneeId != null && (issue.getAssignedTo() == null || issue.getAssignedTo().getId() != assigneeId))
+				return false;
+			if (milestone != null && !milestone.equals(issue.getMilestone()))
+				return false;
+			if (searchText != null && !contains(issue.getSummary(), searchText) &&
+					!contains(issue.getDescription(), searchText))
+				return false;
+			return true;
+		};
+	}
+
+	private static boolean contains(String text, String lowerCasePart) {
+		return text != null && text.toLowerCase(Locale.ROOT).contains(lowerCasePart);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (o == null || getClass() != o.getClass())
+			return false;
+		IssueQuery that = (IssueQuery) o;
+		return scope == that.scope && labels.equals(that.labels) && Objects.equals(assigneeId, that.assigneeId) &&
+				Objects.equals(milestone, that.milestone) && Objects.equals(search, that.search);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(scope, labels, assigneeId, milestone, search);
+	}
+
+
+	public static enum Scope {
+		OPEN("Open & active", "opened"), CLOSED("Closed", "closed"), ALL("All", "all");
+
+		private final String text;
+		private final String parameter;
+
+		Scope(String text, String parameter) {
+			this.text = text;
+			this.parameter = parameter;
+		}
+
+		@Override
+		public String toString() {
+			return text;
+		}
+	}
+}
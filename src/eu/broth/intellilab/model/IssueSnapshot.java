@@ -0,0 +1,191 @@
+package eu.broth.intellilab.model;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local copy of the issues, members and task links of a GitLab project, used to show the last known state right
+ * after startup until the server has been contacted.
+ * <p>
+ * Snapshots are kept in a compact binary file per server and project within the IDE's system directory.
+ *
+ * @version 17.10.2026
+ */
+class IssueSnapshot {
+
+	private static final Logger LOG = Logger.getInstance(IssueSnapshot.class);
+
+	private static final int MAGIC = 0x474c4953;
+	private static final int VERSION = 2;
+	// GitLab limits descriptions to a million characters
+	private static final int MAX_STRING_LENGTH = 4 * 1024 * 1024;
+	private static final int MAX_COUNT = 1024 * 1024;
+
+	// snapshots are written one after another, so a later snapshot is never overwritten by an earlier one
+	private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "IntelliLab snapshot writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	final String updatedAfter;
+	final List<GitlabIssue> issues;
+	final List<GitlabUser> members;
+	final Map<Integer, String> taskLinks;
+
+	private IssueSnapshot(String updatedAfter, List<GitlabIssue> issues, List<GitlabUser> members,
+						  Map<Integer, String> taskLinks) {
+		this.updatedAfter = updatedAfter;
+		this.issues = issues;
+		this.members = members;
+		this.taskLinks = taskLinks;
+	}
+
+	static File fileFor(String serverUrl, GitlabProject project) {
+		String name = serverUrl.replaceAll("[^a-zA-Z0-9.-]+", "_") + "-" + project.getId() + ".bin";
+		return new File(new File(PathManager.getSystemPath(), "intellilab"), name);
+	}
+
+	/**
+	 * Writes a snapshot in the background. The issues must not be changed afterwards.
+	 */
+	static void writeLater(File file, String updatedAfter, Collection<GitlabIssue> issues,
+						   Collection<GitlabUser> members, Map<Integer, String> taskLinks) {
+		WRITER.execute(() -> {
+			try {
+				write(file, updatedAfter, issues, members, taskLinks);
+			} catch (IOException e) {
+				LOG.warn("Cannot write issue snapshot " + file, e);
+			}
+		});
+	}
+
+	static void write(File file, String updatedAfter, Collection<GitlabIssue> issues, Collection<GitlabUser> members,
+					  Map<Integer, String> taskLinks) throws IOException {
+		// collect all users referenced by issues, so every user is written only once
+		Map<Integer, GitlabUser> users = new LinkedHashMap<>();
+		members.forEach(user -> users.put(user.getId(), user));
+		for (GitlabIssue issue : issues) {
+			if (issue.getAssignedTo() != null)
+				users.put(issue.getAssignedTo().getId(), issue.getAssignedTo());
+			if (issue.getCreatedBy() != null)
+				users.put(issue.getCreatedBy().getId(), issue.getCreatedBy());
+		}
+
+		File dir = file.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Cannot create directory " + dir);
+
+		// write to a temporary file first, so a crash never leaves a broken snapshot behind
+		File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, updatedAfter);
+
+			out.writeInt(users.size());
+			for (GitlabUser user : users.values()) {
+				user.writeTo(out);
+			}
+			out.writeInt(members.size());
+			for (GitlabUser member : members) {
+				out.writeInt(member.getId());
+			}
+			out.writeInt(issues.size());
+			for (GitlabIssue issue : issues) {
+				issue.writeTo(out);
+			}
+			out.writeInt(taskLinks.size());
+			for (Map.Entry<Integer, String> link : taskLinks.entrySet()) {
+				out.writeInt(link.getKey());
+				writeString(out, link.getValue());
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(tempFile.toPath());
+			throw e;
+		}
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Reads a snapshot and registers all its entities with the given entity manager.
+	 *
+	 * @return the snapshot or null if there is none (or it cannot be read)
+	 */
+	@Nullable
+	static IssueSnapshot read(File file, EntityManager em) {
+		if (!file.isFile())
+			return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			String updatedAfter = readString(in);
+
+			int userCount = readCount(in);
+			for (int i = 0; i < userCount; i++) {
+				em.user(in.readInt()).readFrom(in);
+			}
+			int memberCount = readCount(in);
+			List<GitlabUser> members = new ArrayList<>(memberCount);
+			for (int i = 0; i < memberCount; i++) {
+				members.add(em.user(in.readInt()));
+			}
+			int issueCount = readCount(in);
+			List<GitlabIssue> issues = new ArrayList<>(issueCount);
+			for (int i = 0; i < issueCount; i++) {
+				GitlabIssue issue = em.issue(in.readInt());
+				issue.readFrom(in, em::user);
+				issues.add(issue);
+			}
+			int linkCount = readCount(in);
+			Map<Integer, String> taskLinks = new HashMap<>(linkCount);
+			for (int i = 0; i < linkCount; i++) {
+				taskLinks.put(in.readInt(), readString(in));
+			}
+			return new IssueSnapshot(updatedAfter, issues, members, taskLinks);
+		} catch (IOException | RuntimeException e) {
+			// damaged snapshot, so simply start from scratch
+			LOG.warn("Cannot read issue snapshot " + file, e);
+			return null;
+		}
+	}
+
+
+	static void writeString(DataOutput out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		// not using writeUTF since descriptions may exceed its limit of 64 KB
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length == -1)
+			return null;
+		if (length < 0 || length > MAX_STRING_LENGTH)
+			throw new IOException("Damaged snapshot: invalid string length " + length);
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static int readCount(DataInput in) throws IOException {
+		int count = in.readInt();
+		if (count < 0 || count > MAX_COUNT)
+			throw new IOException("Damaged snapshot: invalid count " + count);
+		return count;
+	}
+}
@@ -0,0 +1,158 @@
+package eu.broth.intellilab.model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Holds the issues of the loaded project. Issues are merged into a concurrent working set, so several pages may be
+ * merged at the same time. Readers never see the working set, but only immutable snapshots which are swapped in
+ * atomically whenever the changes are published. Snapshots hold copies of the issues, since the issues of the working
+ * set keep changing while the snapshot is shown.
+ *
+ * @version 17.10.2026
+ */
+class IssueStore {
+
+	/**
+	 * GitLab lists the newest issues first.
+	 */
+	private static final Comparator<GitlabIssue> ISSUE_ORDER = Comparator.comparing(GitlabIssue::getId).reversed();
+
+	private final ConcurrentMap<Integer, GitlabIssue> working = new ConcurrentHashMap<>();
+	// issues merged or changed locally since the last publication
+	private final Set<GitlabIssue> touched = ConcurrentHashMap.newKeySet();
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+
+	/**
+	 * Merges the issue into the instance already known with the same id, or adds it if there is none.
+	 *
+	 * @return the known instance
+	 */
+	GitlabIssue merge(GitlabIssue issue) {
+		GitlabIssue known = working.compute(issue.getId(), (id, existing) -> {
+			if (existing == null || existing == issue)
+				return issue;
+			// issue has been parsed into a fresh instance, so keep the one everybody refers to
+			existing.merge(issue);
+			return existing;
+		});
+		touched.add(known);
+		return known;
+	}
+
+	/**
+	 * Marks an issue as locally changed, so the change is part of the next publication.
+	 */
+	void touch(GitlabIssue issue) {
+		touched.add(issue);
+	}
+
+	/**
+	 * @return the latest state of the issue, which may not have been published yet, i.e. the instance to change
+	 * instead of the published copy
+	 */
+	GitlabIssue get(int id) {
+		return working.get(id);
+	}
+
+	/**
+	 * @return all issues known, no matter whether they are published
+	 */
+	Collection<GitlabIssue> getAll() {
+		return Collections.unmodifiableCollection(working.values());
+	}
+
+	void remove(GitlabIssue issue) {
+		working.remove(issue.getId(), issue);
+	}
+
+	/**
+	 * @return the issues removed
+	 */
+	List<GitlabIssue> removeIf(Predicate<GitlabIssue> filter) {
+		List<GitlabIssue> removed = new ArrayList<>();
+		working.values().removeIf(issue -> filter.test(issue) && removed.add(issue));
+		return removed;
+	}
+
+	/**
+	 * Drops all issues at once, i.e. the next publication resets the listeners.
+	 */
+	synchronized IssueChangeSet clear() {
+		working.clear();
+		touched.clear();
+		snapshot.set(Snapshot.EMPTY);
+		return IssueChangeSet.reset(Snapshot.EMPTY.issues);
+	}
+
+	Snapshot getSnapshot() {
+		return snapshot.get();
+	}
+
+	/**
+	 * Replaces the snapshot by the issues of the current working set which are accepted by the filter. The others
+	 * are kept, but are not visible to readers.
+	 *
+	 * @return the changes compared to the previous snapshot
+	 */
+	synchronized IssueChangeSet publish(Predicate<GitlabIssue> visible) {
+		// take the changes before copying the working set, so no change can get lost in between
+		Map<GitlabIssue, Set<GitlabIssue.Field>> changed = new IdentityHashMap<>();
+		for (Iterator<GitlabIssue> it = touched.iterator(); it.hasNext(); ) {
+			GitlabIssue issue = it.next();
+			it.remove();
+			changed.put(issue, issue.takeChanges());
+		}
+
+		// issues which have not changed are still the same as their published copies
+		Snapshot previous = snapshot.get();
+		Map<Integer, GitlabIssue> byId = new HashMap<>();
+		for (GitlabIssue issue : working.values()) {
+			if (visible.test(issue)) {
+				GitlabIssue published = previous.byId.get(issue.getId());
+				byId.put(issue.getId(), published == null || changed.containsKey(issue) ? issue.copy() : published);
+			}
+		}
+		List<GitlabIssue> issues = new ArrayList<>(byId.values());
+		issues.sort(ISSUE_ORDER);
+
+		Set<Integer> added = new HashSet<>();
+		for (GitlabIssue issue : issues) {
+			if (!previous.byId.containsKey(issue.getId())) {
+				added.add(issue.getId());
+			}
+		}
+		Set<Integer> removed = new HashSet<>(previous.byId.keySet());
+		removed.removeAll(byId.keySet());
+		Map<Integer, Set<GitlabIssue.Field>> updated = new HashMap<>();
+		changed.forEach((issue, fields) -> {
+			if (!fields.isEmpty() && !added.contains(issue.getId()) && byId.containsKey(issue.getId()) &&
+					working.get(issue.getId()) == issue) {
+				updated.put(issue.getId(), fields);
+			}
+		});
+
+		Snapshot next = new Snapshot(Collections.unmodifiableList(issues), Collections.unmodifiableMap(byId));
+		snapshot.set(next);
+		return new IssueChangeSet(next.issues, added, updated, removed);
+	}
+
+
+	/**
+	 * Immutable state of all issues at the time of a publication.
+	 */
+	static class Snapshot {
+		static final Snapshot EMPTY = new Snapshot(Collections.emptyList(), Collections.emptyMap());
+
+		final List<GitlabIssue> issues;
+		final Map<Integer, GitlabIssue> byId;
+
+		private Snapshot(List<GitlabIssue> issues, Map<Integer, GitlabIssue> byId) {
+			this.issues = issues;
+			this.byId = byId;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package eu.broth.intellilab.model;
+
+import com.intellij.concurrency.JobScheduler;
+import com.intellij.tasks.LocalTask;
+import eu.broth.intellilab.util.Params;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects changes of issues for a short while before sending them to the server, so several changes of the same
+ * issue end up in a single request. State changes which cancel each other out (e.g. closing and reopening an issue)
+ * are not sent at all.
+ * <p>
+ * Requests for the same issue are sent one after another in the order the changes have been made. Requests for
+ * different issues may run at the same time. While changes of an issue are on their way, the issue keeps its local
+ * state, see {@link GitlabIssue#setUnconfirmed(boolean)}.
+ *
+ * @version 17.10.2026
+ */
+class IssueWriteQueue {
+
+	private static final long FLUSH_DELAY = 300;
+
+	@FunctionalInterface
+	static interface Writer {
+		CompletableFuture<?> write(GitlabIssue issue, Params params);
+	}
+
+	@FunctionalInterface
+	static interface FailureHandler {
+		/**
+		 * @param stateBefore the local state of the issue before the first state change of the failed request, or
+		 *                    null if the request has not changed the state
+		 * @param taskBefore  the task of the issue before the first state change of the failed request
+		 */
+		void failed(GitlabIssue issue, Params params, @Nullable GitlabIssue.State stateBefore,
+					@Nullable LocalTask taskBefore, Throwable t);
+	}
+
+	private final Writer writer;
+	private final FailureHandler failureHandler;
+
+	private final Map<Integer, PendingWrite> pending = new HashMap<>();
+	private final Map<Integer, CompletableFuture<?>> inFlight = new HashMap<>();
+
+	IssueWriteQueue(Writer writer, FailureHandler failureHandler) {
+		this.writer = writer;
+		this.failureHandler = failureHandler;
+	}
+
+	/**
+	 * Queues closing or reopening an issue.
+	 *
+	 * @param stateBefore the local state of the issue before the change
+	 * @param taskBefore  the task of the issue before the change
+	 */
+	synchronized void changeState(GitlabIssue issue, GitlabIssue.State stateBefore, @Nullable LocalTask taskBefore) {
+		PendingWrite write = pendingFor(issue);
+		if (write.stateBefore == null) {
+			write.stateBefore = stateBefore;
+			write.taskBefore = taskBefore;
+		}
+		write.open = issue.isOpenOrActive();
+	}
+
+	/**
+	 * Queues changes of issue fields. Values of later calls replace the ones of earlier calls.
+	 */
+	synchronized void update(GitlabIssue issue, Params params) {
+		pendingFor(issue).fields.merge(params);
+	}
+
+	/**
+	 * @return whether there are changes of the issue which have not been confirmed by the server yet
+	 */
+	synchronized boolean hasPending(GitlabIssue issue) {
+		return pending.containsKey(issue.getId()) || inFlight.containsKey(issue.getId());
+	}
+
+	/**
+	 * Sends all queued changes right away, e.g. before the project is closed.
+	 *
+	 * @return a future which completes as soon as all requests have finished
+	 */
+	synchronized CompletableFuture<Void> flushAll() {
+		for (Integer issueId : pending.keySet().toArray(new Integer[pending.size()])) {
+			flush(issueId);
+		}
+		CompletableFuture<?>[] requests = inFlight.values().stream()
+				.map(request -> request.handle((result, t) -> null))
+				.toArray(CompletableFuture<?>[]::new);
+		return CompletableFuture.allOf(requests);
+	}
+
+	private PendingWrite pendingFor(GitlabIssue issue) {
+		issue.setUnconfirmed(true);
+		return pending.computeIfAbsent(issue.getId(), id -> {
+			JobScheduler.getScheduler().schedule(() -> flush(id), FLUSH_DELAY, TimeUnit.MILLISECONDS);
+			return new PendingWrite(issue);
+		});
+	}
+
+	private void updateUnconfirmed(GitlabIssue issue) {
+		issue.setUnconfirmed(pending.containsKey(issue.getId()) || inFlight.containsKey(issue.getId()));
+	}
+
+	private synchronized void flush(int issueId) {
+		PendingWrite write = pending.remove(issueId);
+		if (write == null)
+			return;
+		Params params = write.toParams();
+		if (params.isEmpty()) {
+			updateUnconfirmed(write.issue);
+			return;
+		}
+		GitlabIssue.State stateBefore = params.get("state_event") != null ? write.stateBefore : null;
+
+		// wait for the previous request of the issue, no matter whether it has been successful
+		CompletableFuture<?> previous = inFlight.get(issueId);
+		CompletableFuture<?> request = previous == null
+				? writer.write(write.issue, params)
+				: previous.handle((result, t) -> null).thenCompose(ignore -> writer.write(write.issue, params));
+		inFlight.put(issueId, request);
+		request.whenComplete((result, t) -> {
+			synchronized (this) {
+				inFlight.remove(issueId, request);
+				updateUnconfirmed(write.issue);
+			}
+			if (t != null) {
+				failureHandler.failed(write.issue, params, stateBefore, write.taskBefore, t);
+			}
+		});
+	}
+
+
+	private static class PendingWrite {
+		final GitlabIssue issue;
+		final Params fields = new Params();
+		// state when the first change has been queued, i.e. as far as known, the issue is still like this on the server
+		GitlabIssue.State stateBefore;
+		LocalTask taskBefore;
+		boolean open;
+
+		PendingWrite(GitlabIssue issue) {
+			this.issue = issue;
+		}
+
+		Params toParams() {
+			Params params = new Params().merge(fields);
+			if (stateBefore != null && (stateBefore != GitlabIssue.State.CLOSED) != open) {
+				params.add("state_event", open ? "reopen" : "close");
+			}
+			return params;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package eu.broth.intellilab.model;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * All labels used by the issues of a project. Every label is stored only once and gets a small number, so issues can
+ * keep their labels as bits and label checks become bit operations.
+ *
+ * @version 17.10.2026
+ */
+public class LabelDictionary {
+
+	static final String BUG = "bug";
+
+	private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+	private final List<String> labels = new CopyOnWriteArrayList<>();
+
+	private final int bugId;
+
+	LabelDictionary() {
+		bugId = id(BUG);
+	}
+
+	/**
+	 * @return the number of the label, which is assigned on first use
+	 */
+	int id(String label) {
+		Integer id = ids.get(label);
+		if (id != null)
+			return id;
+		synchronized (this) {
+			return ids.computeIfAbsent(label, key -> {
+				labels.add(key);
+				return labels.size() - 1;
+			});
+		}
+	}
+
+	/**
+	 * @return the number of the label or -1 if it has never been used
+	 */
+	public int find(String label) {
+		return ids.getOrDefault(label, -1);
+	}
+
+	public String label(int id) {
+		return labels.get(id);
+	}
+
+	public int size() {
+		return labels.size();
+	}
+
+	int bugId() {
+		return bugId;
+	}
+
+	/**
+	 * @return the bits of all given labels (labels never used are ignored)
+	 */
+	public BitSet bits(Collection<String> labels) {
+		BitSet bits = new BitSet(size());
+		for (String label : labels) {
+			int id = find(label);
+			if (id >= 0) {
+				bits.set(id);
+			}
+		}
+		return bits;
+	}
+
+	BitSet intern(String[] labels) {
+		BitSet bits = new BitSet(size());
+		for (String label : labels) {
+			if (label != null) {
+				bits.set(id(label.trim()));
+			}
+		}
+		return bits;
+	}
+}
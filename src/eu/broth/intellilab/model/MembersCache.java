@@ -0,0 +1,66 @@
+package eu.broth.intellilab.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of project and group member lists of a GitLab server. Since it is shared by all IntelliJ projects, all
+ * projects within the same group namespace share their group members.
+ * <p>
+ * Entries are considered fresh for a configurable time. Afterwards, they are revalidated by means of their ETag.
+ *
+ * @version 17.10.2026
+ */
+class MembersCache {
+
+	private static final Map<String, MembersCache> CACHES = new HashMap<>();
+
+	static synchronized MembersCache forServer(String serverUrl) {
+		return CACHES.computeIfAbsent(serverUrl, url -> new MembersCache());
+	}
+
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private MembersCache() {
+	}
+
+	static String key(boolean inGroup, int id) {
+		return (inGroup ? "group:" : "project:") + id;
+	}
+
+	Entry get(String key) {
+		return entries.get(key);
+	}
+
+	void put(String key, List<GitlabUser> users, String etag) {
+		entries.put(key, new Entry(users, etag));
+	}
+
+
+	static class Entry {
+		final List<GitlabUser> users;
+		final String etag;
+		private volatile long validatedAt;
+
+		private Entry(List<GitlabUser> users, String etag) {
+			this.users = users;
+			this.etag = etag;
+			this.validatedAt = System.currentTimeMillis();
+		}
+
+		boolean isFresh(long ttl) {
+			return System.currentTimeMillis() - validatedAt < ttl;
+		}
+
+		/**
+		 * Marks the entry as fresh again, e.g. after the server has confirmed it is still up to date.
+		 */
+		void revalidated() {
+			validatedAt = System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package eu.broth.intellilab.model;
+
+import com.intellij.concurrency.JobScheduler;
+import com.intellij.ide.IdeEventQueue;
+import eu.broth.intellilab.util.CircuitBreaker;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Refreshes the issues of a project in the background. The interval adapts to how much the issues are needed: it is
+ * short while the issues are shown and changing, grows while nothing changes and is long while the issues are hidden
+ * or the user is away, or while the server pushes changes by itself. Failed refreshes are retried later and later.
+ * Only one refresh runs at a time.
+ *
+ * @version 17.10.2026
+ */
+class SyncScheduler {
+
+	private static final int MAX_QUIET_FACTOR = 8;
+	private static final int HIDDEN_FACTOR = 10;
+	private static final long IDLE_TIME = TimeUnit.MINUTES.toMillis(5);
+	private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(30);
+	// without any pushed change for that long, the server may not be able to reach us anymore
+	private static final long PUSH_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+	// several IDEs started at the same time must not poll the server in lockstep
+	private static final double JITTER = 0.1;
+
+	private final Supplier<CompletableFuture<?>> sync;
+	private final LongSupplier baseInterval;
+
+	private volatile boolean shown;
+	private volatile boolean changed;
+	private volatile long lastPushed;
+
+	private ScheduledFuture<?> next;
+	private boolean running;
+	private boolean stopped;
+	private int quietPolls;
+	private int failures;
+
+	/**
+	 * @param sync         starts a refresh
+	 * @param baseInterval the interval in milliseconds while the issues are shown and changing (0 to disable polling)
+	 */
+	SyncScheduler(Supplier<CompletableFuture<?>> sync, LongSupplier baseInterval) {
+		this.sync = sync;
+		this.baseInterval = baseInterval;
+	}
+
+	synchronized void start() {
+		stopped = false;
+		schedule();
+	}
+
+	synchronized void stop() {
+		stopped = true;
+		if (next != null) {
+			next.cancel(false);
+			next = null;
+		}
+	}
+
+	/**
+	 * Tells that issues have been added, updated or removed, so they should be polled more often again.
+	 */
+	void issuesChanged() {
+		changed = true;
+	}
+
+	/**
+	 * Tells that the server has pushed a change, so polling is only needed as a fallback for a while.
+	 */
+	void pushReceived() {
+		lastPushed = System.currentTimeMillis();
+	}
+
+	synchronized void setShown(boolean shown) {
+		if (this.shown == shown)
+			return;
+		this.shown = shown;
+		if (shown) {
+			quietPolls = 0;
+		}
+		// a pending poll may come way too late or too early now
+		if (!running) {
+			schedule();
+		}
+	}
+
+	private synchronized void schedule() {
+		if (next != null) {
+			next.cancel(false);
+			next = null;
+		}
+		long interval = nextInterval();
+		if (stopped || interval <= 0)
+			return;
+		next = JobScheduler.getScheduler().schedule(this::poll, interval, TimeUnit.MILLISECONDS);
+	}
+
+	private void poll() {
+		synchronized (this) {
+			if (stopped || running)
+				return;
+			running = true;
+			next = null;
+		}
+		changed = false;
+		CompletableFuture<?> refresh;
+		try {
+			refresh = sync.get();
+		} catch (RuntimeException e) {
+			refresh = new CompletableFuture<>();
+			refresh.completeExceptionally(e);
+		}
+		refresh.whenComplete((result, t) -> finished(t));
+	}
+
+	private synchronized void finished(Throwable t) {
+		running = false;
+		if (t == null) {
+			failures = 0;
+			quietPolls = changed ? 0 : quietPolls + 1;
+		} else if (!isSuspended(t)) {
+			// a suspended refresh has not been sent at all, so keep polling as usual to notice the server coming back
+			failures++;
+		}
+		schedule();
+	}
+
+	private static boolean isSuspended(Throwable t) {
+		for (; t != null; t = t.getCause()) {
+			if (t instanceof CircuitBreaker.OpenException)
+				return true;
+		}
+		return false;
+	}
+
+	private long nextInterval() {
+		long base = baseInterval.getAsLong();
+		if (base <= 0)
+			return 0;
+		long interval;
+		if (failures > 0) {
+			// exponential backoff
+			interval = Math.min(base << Math.min(failures, 16), MAX_BACKOFF);
+		} else if (!shown || IdeEventQueue.getInstance().getIdleTime() > IDLE_TIME ||
+				System.currentTimeMillis() - lastPushed < PUSH_TIMEOUT) {
+			interval = base * HIDDEN_FACTOR;
+		} else {
+			interval = base * Math.min(1 << Math.min(quietPolls, 16), MAX_QUIET_FACTOR);
+		}
+		double jitter = ThreadLocalRandom.current().nextDouble(-JITTER, JITTER);
+		return interval + (long) (interval * jitter);
+	}
+}
@@ -6,16 +6,30 @@ import com.intellij.util.ui.UIUtil;
 import eu.broth.intellilab.model.GitlabIssue;
 
 import javax.swing.*;
+import javax.swing.border.Border;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 
 /**
+ * Renders all cells of the issues table. Since it is invoked for every visible cell on each repaint, it does not
+ * allocate anything: colors are computed once per look and feel and the texts are cached by the issues.
+ *
  * @author Bastian Roth
  * @version 13.04.2014
  */
 class IssueRenderer extends DefaultTableCellRenderer {
 
+	private static final Border BORDER = BorderFactory.createEmptyBorder(5, 2, 5, 2);
 
+	// text colors for all combinations of state, bug and selection, see paletteIndex
+	private Color[] palette;
+
+	@Override
+	public void updateUI() {
+		super.updateUI();
+		// the look and feel has changed, so the colors have to be computed again
+		palette = null;
+	}
 
 	@Override
 	public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
@@ -30,32 +44,22 @@ class IssueRenderer extends DefaultTableCellRenderer {
 	private void adaptLabel(JLabel label, GitlabIssue issue, int column, boolean isSelected) {
 		label.setText(getText(issue, column));
 
-		boolean dark = UIUtil.isUnderDarcula();
-		Color textColor = JBColor.foreground();
-		Color bugColor = JBColor.red;
-		if (issue.isClosed()) {
-			textColor = dark ? textColor.darker() : ColorUtil.mix(textColor, JBColor.white, 0.4);
-			bugColor = dark ? bugColor.darker() : ColorUtil.mix(bugColor, JBColor.white, 0.4);
+		if (palette == null) {
+			palette = createPalette();
 		}
-		if (issue.getState() == GitlabIssue.State.ACTIVE) {
-			textColor = ColorUtil.mix(textColor, JBColor.green, 0.6);
-		} else if (issue.isBug()) {
-			textColor = ColorUtil.mix(textColor, bugColor, 0.7);
-		}
-		if (isSelected) {
-			textColor = dark ? textColor.brighter() : textColor.darker().darker();
-		}
-		label.setForeground(textColor);
+		GitlabIssue.State state = issue.getState();
+		boolean bug = issue.isBug();
+		label.setForeground(palette[paletteIndex(state, bug, isSelected)]);
 
 		if (column == 0) {
-			if (issue.isBug()) {
-				if (issue.isClosed())
+			if (bug) {
+				if (state == GitlabIssue.State.CLOSED)
 					label.setIcon(Icons.BUG_CLOSED);
 				else
 					label.setIcon(Icons.BUG_OPEN);
 			}
 			else {
-				if (issue.isClosed())
+				if (state == GitlabIssue.State.CLOSED)
 					label.setIcon(Icons.TASK_CLOSED);
 				else
 					label.setIcon(Icons.TASK_OPEN);
@@ -63,13 +67,49 @@ class IssueRenderer extends DefaultTableCellRenderer {
 		} else {
 			label.setIcon(null);
 		}
-		label.setBorder(BorderFactory.createEmptyBorder(5, 2, 5, 2));
+		label.setBorder(BORDER);
+	}
+
+	private static int paletteIndex(GitlabIssue.State state, boolean bug, boolean selected) {
+		return state.ordinal() * 4 + (bug ? 2 : 0) + (selected ? 1 : 0);
+	}
+
+	private static Color[] createPalette() {
+		GitlabIssue.State[] states = GitlabIssue.State.values();
+		Color[] palette = new Color[states.length * 4];
+		for (GitlabIssue.State state : states) {
+			for (int bug = 0; bug < 2; bug++) {
+				for (int selected = 0; selected < 2; selected++) {
+					palette[paletteIndex(state, bug == 1, selected == 1)] = computeColor(state, bug == 1, selected == 1);
+				}
+			}
+		}
+		return palette;
+	}
+
+	private static Color computeColor(GitlabIssue.State state, boolean bug, boolean selected) {
+		boolean dark = UIUtil.isUnderDarcula();
+		Color textColor = JBColor.foreground();
+		Color bugColor = JBColor.red;
+		if (state == GitlabIssue.State.CLOSED) {
+			textColor = dark ? textColor.darker() : ColorUtil.mix(textColor, JBColor.white, 0.4);
+			bugColor = dark ? bugColor.darker() : ColorUtil.mix(bugColor, JBColor.white, 0.4);
+		}
+		if (state == GitlabIssue.State.ACTIVE) {
+			textColor = ColorUtil.mix(textColor, JBColor.green, 0.6);
+		} else if (bug) {
+			textColor = ColorUtil.mix(textColor, bugColor, 0.7);
+		}
+		if (selected) {
+			textColor = dark ? textColor.brighter() : textColor.darker().darker();
+		}
+		return textColor;
 	}
 
 	private String getText(GitlabIssue issue, int columnIndex) {
 		switch (columnIndex) {
 			case 0: {
-				return "#" + issue.getLocalId();
+				return issue.getLocalIdText();
 			}
 			case 1: {
 				return issue.getSummary();
@@ -89,4 +129,4 @@ class IssueRenderer extends DefaultTableCellRenderer {
 		}
 		return "";
 	}
-}
\ No newline at end of file
+}
@@ -3,12 +3,19 @@ package eu.broth.intellilab.ui;
 import com.intellij.ui.table.JBTable;
 import eu.broth.intellilab.model.GitlabClient;
 import eu.broth.intellilab.model.GitlabIssue;
+import eu.broth.intellilab.model.IssueChangeSet;
 
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableRowSorter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * @author Bastian Roth
@@ -19,6 +26,8 @@ public class IssuesTable extends JBTable {
 	private GitlabClient client;
 
 	private IssuesTableModel model;
+	private TableRowSorter<IssuesTableModel> sorter;
+	private Predicate<GitlabIssue> filter;
 
 	public IssuesTable() {
 		setDefaultRenderer(GitlabIssue.class, new IssueRenderer());
@@ -28,7 +37,68 @@ public class IssuesTable extends JBTable {
 		this.client = client;
 	}
 
+	/**
+	 * @return the issue shown in the selected row or null if no row is selected
+	 */
+	public GitlabIssue getSelectedIssue() {
+		int row = getSelectedRow();
+		if (row < 0 || model == null)
+			return null;
+		return getIssueAt(row);
+	}
+
+	/**
+	 * @param row the index of a row as shown, i.e. after filtering
+	 */
+	public GitlabIssue getIssueAt(int row) {
+		return model.issues.get(convertRowIndexToModel(row));
+	}
+
+	public boolean isFiltered() {
+		return filter != null;
+	}
+
+	/**
+	 * Only shows the issues accepted by the given filter.
+	 *
+	 * @param filter the filter or null to show all issues
+	 */
+	public void setFilter(@Nullable Predicate<GitlabIssue> filter) {
+		this.filter = filter;
+		if (sorter != null) {
+			sorter.setRowFilter(createRowFilter());
+		}
+	}
+
+	/**
+	 * Replaces the filter without filtering the rows shown again, since the new filter only decides differently for
+	 * issues which have changed. Their rows are filtered again by the next changes applied.
+	 *
+	 * @param filter the filter, which is ignored if no filter is set
+	 */
+	public void refreshFilter(Predicate<GitlabIssue> filter) {
+		if (this.filter != null) {
+			this.filter = filter;
+		}
+	}
+
+	private RowFilter<IssuesTableModel, Integer> createRowFilter() {
+		if (filter == null)
+			return null;
+		// the filter may be refreshed, so always ask the current one
+		return new RowFilter<IssuesTableModel, Integer>() {
+			@Override
+			public boolean include(Entry<? extends IssuesTableModel, ? extends Integer> entry) {
+				return filter.test(model.issues.get(entry.getIdentifier()));
+			}
+		};
+	}
+
 	public void setIssues(List<GitlabIssue> issues) {
+		applyChanges(IssueChangeSet.reset(issues));
+	}
+
+	public void applyChanges(IssueChangeSet changes) {
 		if (model == null) {
 			model = new IssuesTableModel();
 			setModel(model);
@@ -44,9 +114,18 @@ public class IssuesTable extends JBTable {
 			stateColumn.setCellEditor(new IssueStateEditor());
 			stateColumn.setMinWidth(80);
 			stateColumn.setMaxWidth(80);
-		} else {
-			model.setIssues(issues);
+
+			// the sorter is only used for filtering, issues are always listed in the order given by the client
+			sorter = new TableRowSorter<>(model);
+			for (int column = 0; column < model.getColumnCount(); column++) {
+				sorter.setSortable(column, false);
+			}
+			// updated rows are filtered again one by one instead of all rows
+			sorter.setSortsOnUpdates(true);
+			sorter.setRowFilter(createRowFilter());
+			setRowSorter(sorter);
 		}
+		model.applyChanges(changes);
 	}
 
 	private class IssuesTableModel extends AbstractTableModel {
@@ -59,12 +138,68 @@ public class IssuesTable extends JBTable {
 			this.issues = Collections.emptyList();
 		}
 
-		public void setIssues(List<GitlabIssue> issues) {
-			if (issues == null)
-				this.issues = Collections.emptyList();
-			else
-				this.issues = issues;
-			fireTableDataChanged();
+		/**
+		 * Only fires events for the rows which have actually changed, so the selection is kept and unaffected rows
+		 * are not laid out again.
+		 */
+		public void applyChanges(IssueChangeSet changes) {
+			if (changes.isReset()) {
+				issues = changes.getIssues();
+				fireTableDataChanged();
+				return;
+			}
+
+			// the rows are modified step by step, so the model always matches the events fired so far
+			List<GitlabIssue> rows = new ArrayList<>(issues);
+			for (int end = rows.size() - 1; end >= 0; end--) {
+				if (changes.isRemoved(rows.get(end))) {
+					int start = end;
+					while (start > 0 && changes.isRemoved(rows.get(start - 1))) {
+						start--;
+					}
+					rows.subList(start, end + 1).clear();
+					issues = rows;
+					fireTableRowsDeleted(start, end);
+					end = start;
+				}
+			}
+
+			List<GitlabIssue> result = changes.getIssues();
+			if (rows.size() + countAdded(changes) != result.size()) {
+				// the changes are not based on the issues shown (e.g. they have been set meanwhile), so start over
+				issues = result;
+				fireTableDataChanged();
+				return;
+			}
+			for (int start = 0; start < result.size(); start++) {
+				if (changes.isAdded(result.get(start))) {
+					int end = start;
+					while (end + 1 < result.size() && changes.isAdded(result.get(end + 1))) {
+						end++;
+					}
+					rows.addAll(start, result.subList(start, end + 1));
+					issues = rows;
+					fireTableRowsInserted(start, end);
+					start = end;
+				}
+			}
+
+			issues = result;
+			for (int row = 0; row < result.size(); row++) {
+				if (changes.isUpdated(result.get(row))) {
+					fireTableRowsUpdated(row, row);
+				}
+			}
+		}
+
+		private int countAdded(IssueChangeSet changes) {
+			int count = 0;
+			for (GitlabIssue issue : changes.getIssues()) {
+				if (changes.isAdded(issue)) {
+					count++;
+				}
+			}
+			return count;
 		}
 
 		@Override
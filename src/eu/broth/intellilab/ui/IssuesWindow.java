@@ -5,14 +5,28 @@ import com.intellij.openapi.actionSystem.*;
 import com.intellij.openapi.options.ShowSettingsUtil;
 import com.intellij.openapi.project.DumbAwareAction;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
 import com.intellij.openapi.ui.SimpleToolWindowPanel;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.SearchTextField;
 import com.intellij.util.messages.MessageBus;
 import eu.broth.intellilab.model.GitlabClient;
 import eu.broth.intellilab.model.GitlabIssue;
+import eu.broth.intellilab.model.GitlabProject;
+import eu.broth.intellilab.model.GitlabUser;
+import eu.broth.intellilab.model.IssueQuery;
 import eu.broth.intellilab.ui.editing.EditIssueDialog;
 import eu.broth.intellilab.ui.settings.GitlabConfigurable;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
+import java.awt.*;
+import java.awt.event.ActionListener;
+import java.awt.event.HierarchyEvent;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Bastian Roth
@@ -21,6 +35,12 @@ import javax.swing.*;
 public class IssuesWindow extends SimpleToolWindowPanel {
 	private JPanel rootPanel;
 	private IssuesTable table;
+	private SearchTextField searchField;
+
+	private JComboBox scopeCombo;
+	private JTextField labelsField;
+	private JComboBox assigneeCombo;
+	private JTextField milestoneField;
 
 	private Project project;
 	private GitlabClient client;
@@ -34,19 +54,195 @@ public class IssuesWindow extends SimpleToolWindowPanel {
 		initObservation(project.getMessageBus());
 		client = GitlabClient.getInstance(project);
 
-		setContent(rootPanel);
+		setContent(createContent());
 		setToolbar(createToolbar().getComponent());
 
 		table.setClient(client);
 		table.setIssues(client.getIssues());
+
+		// issues are refreshed more often while they are shown
+		addHierarchyListener(e -> {
+			if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+				client.setIssuesShown(isShowing());
+			}
+		});
+
+		// closed issues are loaded page by page while scrolling down to them
+		JScrollPane scrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, table);
+		if (scrollPane != null) {
+			scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> issuesViewed());
+		}
+		table.getSelectionModel().addListSelectionListener(e -> {
+			if (!e.getValueIsAdjusting()) {
+				issuesViewed();
+			}
+		});
 	}
 
 	private void initObservation(MessageBus bus) {
-		bus.connect().subscribe(GitlabClient.ISSUES_LOADED_TOPIC, issues -> {
-			SwingUtilities.invokeLater(() -> table.setIssues(issues));
+		bus.connect().subscribe(GitlabClient.ISSUES_CHANGED_TOPIC, changes -> {
+			SwingUtilities.invokeLater(() -> {
+				// the filter only knows the issues which have been there when it has been created, so the changed
+				// rows are filtered by a new one
+				refreshFilter();
+				table.applyChanges(changes);
+				// keep loading until the visible part of the table is filled
+				issuesViewed();
+			});
 		});
 	}
 
+	private JComponent createContent() {
+		searchField = new SearchTextField(false);
+		searchField.addDocumentListener(new DocumentAdapter() {
+			@Override
+			protected void textChanged(DocumentEvent e) {
+				applyFilter();
+			}
+		});
+
+		JPanel header = new JPanel(new BorderLayout());
+		header.add(createQueryPanel(), BorderLayout.WEST);
+		header.add(searchField, BorderLayout.CENTER);
+
+		JPanel content = new JPanel(new BorderLayout());
+		content.add(header, BorderLayout.NORTH);
+		content.add(rootPanel, BorderLayout.CENTER);
+		return content;
+	}
+
+	/**
+	 * Controls for the query which selects the issues loaded from the server.
+	 */
+	private JComponent createQueryPanel() {
+		IssueQuery query = client.getQuery();
+
+		scopeCombo = new ComboBox(IssueQuery.Scope.values());
+		scopeCombo.setSelectedItem(query.getScope());
+		scopeCombo.addActionListener(e -> applyQuery());
+
+		labelsField = new JTextField(String.join(", ", query.getLabels()), 10);
+		labelsField.setToolTipText("Comma separated labels, press Enter to apply");
+		labelsField.addActionListener(e -> applyQuery());
+
+		assigneeCombo = new ComboBox();
+		assigneeCombo.addItem("<anyone>");
+		assigneeCombo.addPopupMenuListener(new PopupMenuListener() {
+			@Override
+			public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+				// members are loaded together with the issues, so pick them up as late as possible
+				updateAssignees();
+			}
+
+			@Override
+			public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+			}
+
+			@Override
+			public void popupMenuCanceled(PopupMenuEvent e) {
+			}
+		});
+		assigneeCombo.addActionListener(e -> applyQuery());
+
+		milestoneField = new JTextField(query.getMilestone() == null ? "" : query.getMilestone(), 8);
+		milestoneField.setToolTipText("Milestone title, press Enter to apply");
+		milestoneField.addActionListener(e -> applyQuery());
+
+		JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+		panel.add(scopeCombo);
+		panel.add(new JLabel("Labels:"));
+		panel.add(labelsField);
+		panel.add(new JLabel("Assignee:"));
+		panel.add(assigneeCombo);
+		panel.add(new JLabel("Milestone:"));
+		panel.add(milestoneField);
+		return panel;
+	}
+
+	private void updateAssignees() {
+		GitlabProject glProject = client.getProject();
+		if (glProject == null)
+			return;
+		Object selected = assigneeCombo.getSelectedItem();
+		List<GitlabUser> members = glProject.getMembers();
+		if (members.size() == assigneeCombo.getItemCount() - 1)
+			return;
+
+		ActionListener[] listeners = assigneeCombo.getActionListeners();
+		for (ActionListener listener : listeners) {
+			assigneeCombo.removeActionListener(listener);
+		}
+		assigneeCombo.removeAllItems();
+		assigneeCombo.addItem("<anyone>");
+		members.forEach(assigneeCombo::addItem);
+		assigneeCombo.setSelectedItem(selected);
+		for (ActionListener listener : listeners) {
+			assigneeCombo.addActionListener(listener);
+		}
+	}
+
+	private void applyQuery() {
+		Object assignee = assigneeCombo.getSelectedItem();
+		IssueQuery query = client.getQuery()
+				.withScope((IssueQuery.Scope) scopeCombo.getSelectedItem())
+				.withLabels(labelsField.getText())
+				.withAssignee(assignee instanceof GitlabUser ? (GitlabUser) assignee : null)
+				.withMilestone(milestoneField.getText());
+		client.setQuery(query);
+	}
+
+	/**
+	 * Tells the client which issues are shown or selected, so closed issues which are looked at are kept and those
+	 * which have been dropped are loaded again. More closed issues are loaded when scrolling down to the end.
+	 */
+	private void issuesViewed() {
+		if (client == null || client.getQuery().getScope() == IssueQuery.Scope.OPEN)
+			return;
+		Rectangle visible = table.getVisibleRect();
+		int rows = table.getRowCount();
+		int first = table.rowAtPoint(new Point(0, visible.y));
+		int last = table.rowAtPoint(new Point(0, visible.y + visible.height - 1));
+		if (first < 0) {
+			first = rows;
+		}
+		if (last < 0) {
+			last = rows - 1;
+		}
+		List<GitlabIssue> shown = new ArrayList<>();
+		for (int row = first; row <= last; row++) {
+			shown.add(table.getIssueAt(row));
+		}
+		GitlabIssue selected = table.getSelectedIssue();
+		if (selected != null) {
+			shown.add(selected);
+		}
+		// issues are listed by descending id, so dropped issues would show up between the first and the last row
+		int lowestId = last == rows - 1 ? 0 : table.getIssueAt(last).getId();
+		int highestId = first == 0 ? Integer.MAX_VALUE : first < rows ? table.getIssueAt(first).getId() : 0;
+		if (table.isFiltered()) {
+			// rows next to each other may be far apart then, so issues dropped between them are not loaded again
+			highestId = -1;
+		}
+		client.issuesViewed(shown, lowestId, highestId);
+
+		if (visible.y + visible.height >= table.getHeight() - 5 * table.getRowHeight()) {
+			client.loadMoreClosedIssues();
+		}
+	}
+
+	private void applyFilter() {
+		if (searchField == null)
+			return;
+		String text = searchField.getText().trim();
+		table.setFilter(text.isEmpty() ? null : client.search(text));
+	}
+
+	private void refreshFilter() {
+		if (table.isFiltered()) {
+			table.refreshFilter(client.search(searchField.getText().trim()));
+		}
+	}
+
 
 	private ActionToolbar createToolbar() {
 		DefaultActionGroup group = new DefaultActionGroup();
@@ -97,18 +293,17 @@ public class IssuesWindow extends SimpleToolWindowPanel {
 
 		@Override
 		public void actionPerformed(AnActionEvent e) {
-			int row = table.getSelectedRow();
-			if (row < 0)
+			GitlabIssue issue = table.getSelectedIssue();
+			if (issue == null)
 				return;
 
-			GitlabIssue issue = client.getIssues().get(row);
 			EditIssueDialog dialog = new EditIssueDialog(project, issue);
 			dialog.show();
 		}
 
 		@Override
 		public void update(AnActionEvent e) {
-			e.getPresentation().setEnabled(table.getSelectedRow() >= 0);
+			e.getPresentation().setEnabled(table.getSelectedIssue() != null);
 		}
 	}
 
@@ -24,12 +24,14 @@ public class GitlabConfigurationUI implements Disposable {
 	private static final String NO_PROJECTS_MSG = "Before selecting any project is possible, load available projects first";
 	@Nls
 	private static final String NO_PROJECT_ITEM = "<no project>";
+	private static final int MAX_CONNECTIONS = 32;
 
 	private JPanel panel;
 	private JTextField urlField;
 	private JPasswordField tokenField;
 	private JButton loadButton;
 	private JComboBox projectsCombo;
+	private JSpinner connectionsSpinner;
 
 	private GitlabProject selectedProject;
 
@@ -37,6 +39,7 @@ public class GitlabConfigurationUI implements Disposable {
 
 	public GitlabConfigurationUI(Project project) {
 		client = GitlabClient.getInstance(project);
+		connectionsSpinner.setModel(new SpinnerNumberModel(1, 1, MAX_CONNECTIONS, 1));
 		reset();
 		emptyComboBoxModel();
 		loadButton.addMouseListener(new MouseAdapter() {
@@ -111,6 +114,7 @@ public class GitlabConfigurationUI implements Disposable {
 		boolean projectChanged = !client.projectLoaded(selectedProject);
 		return !urlField.getText().equals(client.getServerUrl()) ||
 				!String.valueOf(tokenField.getPassword()).equals(client.getPrivateToken()) ||
+				(Integer) connectionsSpinner.getValue() != client.getMaxConnectionsPerServer() ||
 				projectChanged;
 	}
 
@@ -134,6 +138,7 @@ public class GitlabConfigurationUI implements Disposable {
 					return;
 			}
 		}
+		client.setMaxConnectionsPerServer((Integer) connectionsSpinner.getValue());
 		client.setServerUrl(urlField.getText());
 		client.setPrivateToken(String.valueOf(tokenField.getPassword()));
 		client.loadProject(selectedProject);
@@ -142,6 +147,7 @@ public class GitlabConfigurationUI implements Disposable {
 	public void reset() {
 		urlField.setText(client.getServerUrl());
 		tokenField.setText(client.getPrivateToken());
+		connectionsSpinner.setValue(client.getMaxConnectionsPerServer());
 		selectedProject = client.getProject();
 		emptyComboBoxModel();
 	}
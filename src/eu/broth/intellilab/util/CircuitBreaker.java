@@ -0,0 +1,119 @@
+package eu.broth.intellilab.util;
+
+import com.intellij.concurrency.JobScheduler;
+import com.intellij.openapi.application.ApplicationManager;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Stops sending requests to a server which cannot be reached, so requests fail right away instead of waiting for
+ * timeouts. After a number of consecutive connection failures the breaker opens. While it is open, a single probe is
+ * sent in the background from time to time, and the breaker closes again as soon as the server answers.
+ *
+ * @version 17.10.2026
+ */
+public class CircuitBreaker {
+
+	private static final int FAILURE_THRESHOLD = 3;
+	private static final long PROBE_DELAY = TimeUnit.SECONDS.toMillis(5);
+	private static final long MAX_PROBE_DELAY = TimeUnit.MINUTES.toMillis(5);
+
+	public static enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final String server;
+	private final BooleanSupplier probe;
+
+	private State state = State.CLOSED;
+	private int failures;
+	private long probeDelay;
+	private ScheduledFuture<?> nextProbe;
+
+	/**
+	 * @param probe sends a request to the server and tells whether it has answered at all
+	 */
+	CircuitBreaker(String server, BooleanSupplier probe) {
+		this.server = server;
+		this.probe = probe;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @throws OpenException if no requests are sent to the server right now
+	 */
+	synchronized void checkClosed() throws OpenException {
+		if (state != State.CLOSED)
+			throw new OpenException(server);
+	}
+
+	/**
+	 * Tells that the server has answered a request, no matter whether successfully.
+	 */
+	synchronized void succeeded() {
+		failures = 0;
+	}
+
+	/**
+	 * Tells that the server could not be reached.
+	 */
+	synchronized void failed() {
+		if (state == State.CLOSED && ++failures >= FAILURE_THRESHOLD) {
+			state = State.OPEN;
+			probeDelay = PROBE_DELAY;
+			scheduleProbe();
+		}
+	}
+
+	private void scheduleProbe() {
+		// the probe may take until the connection times out, so it must not block the scheduler
+		nextProbe = JobScheduler.getScheduler().schedule(
+				() -> ApplicationManager.getApplication().executeOnPooledThread(this::probe),
+				probeDelay, TimeUnit.MILLISECONDS);
+	}
+
+	private void probe() {
+		synchronized (this) {
+			if (state != State.OPEN)
+				return;
+			state = State.HALF_OPEN;
+		}
+		boolean reachable = probe.getAsBoolean();
+		synchronized (this) {
+			if (state != State.HALF_OPEN)
+				return;
+			if (reachable) {
+				state = State.CLOSED;
+				failures = 0;
+			} else {
+				state = State.OPEN;
+				probeDelay = Math.min(probeDelay * 2, MAX_PROBE_DELAY);
+				scheduleProbe();
+			}
+		}
+	}
+
+	synchronized void shutdown() {
+		state = State.CLOSED;
+		if (nextProbe != null) {
+			nextProbe.cancel(false);
+			nextProbe = null;
+		}
+	}
+
+
+	/**
+	 * Thrown instead of sending a request while the server is considered unreachable.
+	 */
+	public static class OpenException extends IOException {
+		OpenException(String server) {
+			super(server + " is not reachable, requests are suspended until it answers again");
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package eu.broth.intellilab.util;
+
+import com.intellij.concurrency.JobScheduler;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.net.ssl.CertificatesManager;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pooled HTTP transport which is shared by all clients talking to the same GitLab server.
+ * <p>
+ * Transports are reference counted: every {@link #acquire(String, int)} has to be balanced by a {@link #release()}.
+ * As soon as the last user has released a transport, its pooled connections are closed.
+ *
+ * @version 17.10.2026
+ */
+public class HttpTransport {
+
+	private static final Logger LOG = Logger.getInstance(HttpTransport.class);
+
+	private static final int TIMEOUT = 5000;
+
+	private static final int MAX_CONNECTIONS = 20;
+	private static final long KEEP_ALIVE = 30_000;
+	private static final long EVICTION_INTERVAL = 10_000;
+
+	private static final Map<String, HttpTransport> TRANSPORTS = new HashMap<>();
+
+	/**
+	 * Returns the transport responsible for the given server, creating it if necessary.
+	 *
+	 * @param serverUrl   URL of the GitLab server (only scheme, host and port are relevant)
+	 * @param maxPerRoute maximum number of concurrent connections to the server; only applied if the transport
+	 *                    does not exist yet
+	 */
+	public static synchronized HttpTransport acquire(@NotNull String serverUrl, int maxPerRoute) {
+		String key = toKey(serverUrl);
+		HttpTransport transport = TRANSPORTS.get(key);
+		if (transport == null) {
+			transport = new HttpTransport(key, serverUrl, maxPerRoute);
+			TRANSPORTS.put(key, transport);
+		}
+		transport.users++;
+		return transport;
+	}
+
+	private static String toKey(String serverUrl) {
+		try {
+			URI uri = URI.create(serverUrl.trim());
+			if (uri.getScheme() != null && uri.getHost() != null) {
+				return uri.getScheme().toLowerCase() + "://" + uri.getHost().toLowerCase() + ":" + uri.getPort();
+			}
+		} catch (IllegalArgumentException ignore) {
+			// fall through and use the plain URL as key
+		}
+		return serverUrl;
+	}
+
+
+	private final String key;
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient client;
+	private final ScheduledFuture<?> evictor;
+
+	private final RequestThrottle throttle = new RequestThrottle();
+	private final CircuitBreaker circuitBreaker;
+	private final AtomicLong transferredBytes = new AtomicLong();
+	private final AtomicLong decodedBytes = new AtomicLong();
+
+	private int users;
+
+	private HttpTransport(String key, String serverUrl, int maxPerRoute) {
+		this.key = key;
+
+		Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", new SSLConnectionSocketFactory(CertificatesManager.getInstance().getSslContext(),
+						(X509HostnameVerifier) CertificatesManager.HOSTNAME_VERIFIER))
+				.build();
+		connectionManager = new PoolingHttpClientConnectionManager(registry);
+		setMaxPerRoute(maxPerRoute);
+
+		RequestConfig config = RequestConfig.custom()
+				.setConnectTimeout(TIMEOUT)
+				.setSocketTimeout(TIMEOUT)
+				.setConnectionRequestTimeout(TIMEOUT)
+				.build();
+		client = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setKeepAliveStrategy((response, context) -> {
+					// respect the server's keep alive header but never keep idle connections longer than our limit
+					long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+					return duration > 0 ? Math.min(duration, KEEP_ALIVE) : KEEP_ALIVE;
+				})
+				.setDefaultRequestConfig(config)
+				// bodies are decompressed by RestResponse, which counts the bytes before and after
+				.disableContentCompression()
+				.build();
+
+		evictor = JobScheduler.getScheduler().scheduleWithFixedDelay(() -> {
+			connectionManager.closeExpiredConnections();
+			connectionManager.closeIdleConnections(KEEP_ALIVE, TimeUnit.MILLISECONDS);
+		}, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+
+		circuitBreaker = new CircuitBreaker(serverUrl, () -> {
+			// any answer will do, the server is reachable then
+			try (CloseableHttpResponse response = client.execute(new HttpHead(serverUrl))) {
+				return true;
+			} catch (IOException | IllegalArgumentException e) {
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Changes the maximum number of concurrent connections to the server. Requests beyond that wait for a connection
+	 * to become available.
+	 */
+	public void setMaxPerRoute(int maxPerRoute) {
+		connectionManager.setMaxTotal(Math.max(MAX_CONNECTIONS, maxPerRoute));
+		connectionManager.setDefaultMaxPerRoute(Math.max(1, maxPerRoute));
+	}
+
+	CloseableHttpClient getClient() {
+		return client;
+	}
+
+	/**
+	 * @return the throttle of all requests to the server, which also counts throttled and repeated requests
+	 */
+	public RequestThrottle getThrottle() {
+		return throttle;
+	}
+
+	/**
+	 * @return the breaker which suspends all requests to the server while it cannot be reached
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	void recordTransfer(long transferred, long decoded) {
+		transferredBytes.addAndGet(transferred);
+		decodedBytes.addAndGet(decoded);
+	}
+
+	/**
+	 * Gives back this transport. The pooled connections are shut down after the last user has released it.
+	 */
+	public void release() {
+		synchronized (HttpTransport.class) {
+			if (users <= 0 || --users > 0)
+				return;
+			TRANSPORTS.remove(key);
+		}
+		LOG.debug("Closing connections to " + key + " after receiving " + transferredBytes + " bytes (" + decodedBytes +
+				" bytes decoded), " + throttle);
+		evictor.cancel(false);
+		circuitBreaker.shutdown();
+		try {
+			client.close();
+		} catch (IOException e) {
+			LOG.warn("Closing connections to " + key + " failed", e);
+		}
+	}
+}
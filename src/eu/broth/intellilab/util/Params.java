@@ -29,6 +29,42 @@ public class Params {
 		return this;
 	}
 
+	/**
+	 * Like {@link #add(String, String)}, but replaces a value which has already been added for the given key.
+	 */
+	public Params set(String key, String value) {
+		remove(key);
+		return add(key, value);
+	}
+
+	/**
+	 * @return the value added for the given key or null if there is none
+	 */
+	public String get(String key) {
+		for (BasicNameValuePair pair : pairs) {
+			if (pair.getName().equals(key))
+				return pair.getValue();
+		}
+		return null;
+	}
+
+	public Params remove(String key) {
+		pairs.removeIf(pair -> pair.getName().equals(key));
+		return this;
+	}
+
+	/**
+	 * Takes over all values of the given parameters, where values of the other parameters win.
+	 */
+	public Params merge(Params other) {
+		other.pairs.forEach(pair -> set(pair.getName(), pair.getValue()));
+		return this;
+	}
+
+	public boolean isEmpty() {
+		return pairs.isEmpty();
+	}
+
 	public String format() {
 		return URLEncodedUtils.format(pairs, "utf-8");
 	}
@@ -0,0 +1,120 @@
+package eu.broth.intellilab.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting the requests sent to a GitLab server. Besides its own rate, it follows the rate limit
+ * headers of the server: requests are held back while the server reports that no requests are remaining or asks to
+ * retry later.
+ *
+ * @version 17.10.2026
+ */
+public class RequestThrottle {
+
+	private static final Logger LOG = Logger.getInstance(RequestThrottle.class);
+
+	static final int TOO_MANY_REQUESTS = 429;
+
+	private static final String REMAINING_HEADER = "RateLimit-Remaining";
+	private static final String RESET_HEADER = "RateLimit-Reset";
+	private static final String RETRY_AFTER_HEADER = "Retry-After";
+
+	private static final double CAPACITY = 10;
+	private static final double RATE = 10.0 / 1000;
+	private static final long DEFAULT_PAUSE = 1000;
+	// the server's clock may be off, so never pause longer than that
+	private static final long MAX_PAUSE = TimeUnit.MINUTES.toMillis(1);
+
+	private double tokens = CAPACITY;
+	private long refilledAt = System.currentTimeMillis();
+	private long pausedUntil;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong throttledRequests = new AtomicLong();
+	private final AtomicLong rateLimitedResponses = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+
+	/**
+	 * Waits until the next request may be sent.
+	 */
+	void acquire() throws InterruptedException {
+		long wait;
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			tokens = Math.min(CAPACITY, tokens + (now - refilledAt) * RATE);
+			refilledAt = now;
+			// take the token right away, so concurrent requests queue up behind each other
+			tokens--;
+			wait = Math.max(tokens >= 0 ? 0 : (long) Math.ceil(-tokens / RATE), pausedUntil - now);
+		}
+		requests.incrementAndGet();
+		if (wait > 0) {
+			throttledRequests.incrementAndGet();
+			Thread.sleep(wait);
+		}
+	}
+
+	/**
+	 * Adopts the rate limit state reported by the server.
+	 */
+	void update(HttpResponse response) {
+		Long remaining = getNumber(response, REMAINING_HEADER);
+		boolean rateLimited = response.getStatusLine().getStatusCode() == TOO_MANY_REQUESTS;
+		if (remaining == null && !rateLimited)
+			return;
+
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			if (remaining != null) {
+				tokens = Math.min(tokens, remaining);
+				Long reset = getNumber(response, RESET_HEADER);
+				if (remaining == 0 && reset != null) {
+					pauseUntil(Math.min(TimeUnit.SECONDS.toMillis(reset), now + MAX_PAUSE));
+				}
+			}
+			if (rateLimited) {
+				Long retryAfter = getNumber(response, RETRY_AFTER_HEADER);
+				long pause = retryAfter != null ? TimeUnit.SECONDS.toMillis(retryAfter) : DEFAULT_PAUSE;
+				pauseUntil(now + Math.min(pause, MAX_PAUSE));
+			}
+		}
+		if (rateLimited) {
+			rateLimitedResponses.incrementAndGet();
+			LOG.debug("Rate limited by the server: " + this);
+		}
+	}
+
+	private void pauseUntil(long time) {
+		pausedUntil = Math.max(pausedUntil, time);
+	}
+
+	void retried() {
+		retries.incrementAndGet();
+	}
+
+	private static Long getNumber(HttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		if (header == null)
+			return null;
+		try {
+			return Long.parseLong(header.getValue().trim());
+		} catch (NumberFormatException e) {
+			// e.g. Retry-After given as date
+			return null;
+		}
+	}
+
+	/**
+	 * Tells how many requests have been sent, held back, rate limited by the server and repeated after a failure.
+	 */
+	@Override
+	public String toString() {
+		return "RequestThrottle (requests: " + requests + ", throttled: " + throttledRequests + ", rate limited: " +
+				rateLimitedResponses + ", retries: " + retries + ")";
+	}
+}
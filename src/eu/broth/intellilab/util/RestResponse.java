@@ -0,0 +1,214 @@
+package eu.broth.intellilab.util;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Status, headers and (streamed) body of a successful response received from the GitLab server.
+ *
+ * @version 17.10.2026
+ */
+public class RestResponse {
+
+	private static final Pattern LINK = Pattern.compile("<([^>]*)>\\s*;\\s*rel=\"([^\"]*)\"");
+	private static final Pattern PAGE_PARAM = Pattern.compile("[?&]page=(\\d+)");
+	private static final int BUFFER_SIZE = 8192;
+
+	private final int statusCode;
+	private final HttpEntity entity;
+	private final Header[] headers;
+
+	private CountingInputStream transferred;
+	private CountingInputStream decoded;
+
+	RestResponse(HttpResponse httpResponse) {
+		this.statusCode = httpResponse.getStatusLine().getStatusCode();
+		this.entity = httpResponse.getEntity();
+		this.headers = httpResponse.getAllHeaders();
+	}
+
+	/**
+	 * @return true if a conditional request has been answered with <code>304 Not Modified</code>, i.e. there is no body
+	 */
+	public boolean isNotModified() {
+		return statusCode == HttpStatus.SC_NOT_MODIFIED;
+	}
+
+	/**
+	 * Gives access to the body while it is still arriving. A compressed body is decompressed on the fly. The reader
+	 * is only valid during {@link RestUtil.ResponseHandler#handle(RestResponse)} and can be consumed only once.
+	 */
+	public Reader getReader() throws IOException {
+		if (entity == null || entity.getContentLength() == 0)
+			return new StringReader("");
+		Charset charset = ContentType.getOrDefault(entity).getCharset();
+		return new InputStreamReader(open(), charset != null ? charset : StandardCharsets.UTF_8);
+	}
+
+	private InputStream open() throws IOException {
+		transferred = new CountingInputStream(entity.getContent());
+		Header encoding = entity.getContentEncoding();
+		String coding = encoding == null ? "" : encoding.getValue().trim().toLowerCase(Locale.ROOT);
+		switch (coding) {
+			case "gzip":
+			case "x-gzip":
+				decoded = new CountingInputStream(new GZIPInputStream(transferred, BUFFER_SIZE));
+				break;
+			case "deflate":
+				// an inflater of its own is released by the stream as soon as it is closed
+				decoded = new CountingInputStream(new InflaterInputStream(transferred));
+				break;
+			default:
+				decoded = transferred;
+		}
+		return decoded;
+	}
+
+	/**
+	 * Reads whatever has not been read of the body, so the connection can be reused and all bytes are counted.
+	 */
+	void finish() throws IOException {
+		if (entity == null || entity.getContentLength() == 0)
+			return;
+		if (decoded == null) {
+			open();
+		}
+		decoded.close();
+	}
+
+	/**
+	 * @return the number of body bytes read from the connection so far
+	 */
+	public long getTransferredBytes() {
+		return transferred == null ? 0 : transferred.count;
+	}
+
+	/**
+	 * @return the number of body bytes read so far after decompression
+	 */
+	public long getDecodedBytes() {
+		return decoded == null ? 0 : decoded.count;
+	}
+
+	@Nullable
+	public String getETag() {
+		return getHeader(HttpHeaders.ETAG);
+	}
+
+	@Nullable
+	public String getHeader(String name) {
+		for (Header header : headers) {
+			if (header.getName().equalsIgnoreCase(name))
+				return header.getValue();
+		}
+		return null;
+	}
+
+	/**
+	 * Determines the number of pages of a paginated resource, either from the <code>X-Total-Pages</code> header or
+	 * from the <code>last</code> relation of the <code>Link</code> header.
+	 *
+	 * @return the total number of pages or -1 if the server did not tell
+	 */
+	public int getTotalPages() {
+		String totalPages = getHeader("X-Total-Pages");
+		if (totalPages != null && !totalPages.trim().isEmpty()) {
+			try {
+				return Integer.parseInt(totalPages.trim());
+			} catch (NumberFormatException ignore) {
+				// try link header instead
+			}
+		}
+		String last = getLink("last");
+		if (last != null) {
+			Matcher matcher = PAGE_PARAM.matcher(last);
+			if (matcher.find())
+				return Integer.parseInt(matcher.group(1));
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the URL of the given relation (e.g. <code>next</code>) of the <code>Link</code> header or null
+	 */
+	@Nullable
+	public String getLink(String relation) {
+		String links = getHeader("Link");
+		if (links == null)
+			return null;
+		Matcher matcher = LINK.matcher(links);
+		while (matcher.find()) {
+			if (relation.equals(matcher.group(2)))
+				return matcher.group(1);
+		}
+		return null;
+	}
+
+
+	/**
+	 * Counts the bytes read through it. Closing it reads the rest of the stream first, so the bytes drained before
+	 * reusing the connection are counted as well.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		long count;
+		private boolean closed;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed)
+				return;
+			closed = true;
+			try {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				while (read(buffer, 0, buffer.length) >= 0) {
+					// drain
+				}
+			} finally {
+				super.close();
+			}
+		}
+	}
+}
@@ -1,70 +1,119 @@
 package eu.broth.intellilab.util;
 
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
-import com.intellij.util.net.ssl.CertificatesManager;
-import org.apache.http.HttpResponse;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.HttpResponseException;
-import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.*;
-import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
+ * Asynchronous access to the GitLab REST API. Requests run as background tasks (with progress shown in the status
+ * bar) and their results are delivered through {@link CompletableFuture}s. Only {@link #GET_MODAL} blocks the
+ * caller behind a modal progress dialog.
+ *
  * @author Bastian Roth
  * @version 02.04.2014
  */
 public class RestUtil {
 
-	private static final int TIMEOUT = 5000;
+	private static final Logger LOG = Logger.getInstance(RestUtil.class);
 
-	public static interface AsyncCallback {
-		void onSuccess(String response);
+	private static final String TITLE = "Contacting GitLab server";
+	private static final String NOTIFICATION_GROUP = "GitLab";
+
+	private static final int MAX_ATTEMPTS = 4;
+	private static final long RETRY_DELAY = 500;
+
+	/**
+	 * Processes a successful response. It is invoked on a pooled thread while the body is still being received.
+	 */
+	@FunctionalInterface
+	public static interface ResponseHandler<T> {
+		T handle(RestResponse response) throws IOException;
+	}
+
+	public static <T> CompletableFuture<T> GET(@NotNull HttpTransport transport, @NotNull String url,
+											   @NotNull String token, String message, ResponseHandler<T> handler) {
+		return GET(transport, url, token, null, message, handler);
 	}
 
-	public static boolean GET(@NotNull String url, @NotNull String token, String message, AsyncCallback callback) {
+	/**
+	 * Conditional GET: if the resource still matches the given entity tag, the server answers with
+	 * <code>304 Not Modified</code> which is handed to the handler as well (see {@link RestResponse#isNotModified()}).
+	 */
+	public static <T> CompletableFuture<T> GET(@NotNull HttpTransport transport, @NotNull String url,
+											   @NotNull String token, @Nullable String etag, String message,
+											   ResponseHandler<T> handler) {
 		HttpGet request = new HttpGet(url);
-		return send(request, token, message, callback);
+		if (etag != null) {
+			request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+		}
+		return send(transport, request, token, message, handler, false);
+	}
+
+	/**
+	 * Sends a GET request while a modal progress dialog blocks the IDE. Must be called from the event dispatch thread.
+	 *
+	 * @return true if the request has been successful
+	 */
+	public static boolean GET_MODAL(@NotNull HttpTransport transport, @NotNull String url, @NotNull String token,
+									String message, ResponseHandler<?> handler) {
+		CompletableFuture<?> future = send(transport, new HttpGet(url), token, message, handler, true);
+		return future.isDone() && !future.isCompletedExceptionally();
 	}
 
-	public static boolean PUT(@NotNull String url, @NotNull String token, @NotNull Params params, String message,
-							  AsyncCallback callback) {
+	public static <T> CompletableFuture<T> PUT(@NotNull HttpTransport transport, @NotNull String url,
+											   @NotNull String token, @NotNull Params params, String message,
+											   ResponseHandler<T> handler) {
 		HttpPut request = new HttpPut(url);
 		try {
 			addDataToRequest(request, params);
-			return send(request, token, message, callback);
-		} catch (Exception e) {
-			e.printStackTrace();
+		} catch (UnsupportedEncodingException e) {
+			return failed(e);
 		}
-		return false;
+		return send(transport, request, token, message, handler, false);
 	}
 
-	public static boolean POST(@NotNull String url, @NotNull String token, @NotNull Params params, String message,
-							  AsyncCallback callback) {
+	public static <T> CompletableFuture<T> POST(@NotNull HttpTransport transport, @NotNull String url,
+												@NotNull String token, @NotNull Params params, String message,
+												ResponseHandler<T> handler) {
 		HttpPost request = new HttpPost(url);
 		try {
 			addDataToRequest(request, params);
-			return send(request, token, message, callback);
-		} catch (Exception e) {
-			e.printStackTrace();
+		} catch (UnsupportedEncodingException e) {
+			return failed(e);
 		}
-		return false;
+		return send(transport, request, token, message, handler, false);
 	}
 
 	private static void addDataToRequest(@NotNull HttpEntityEnclosingRequestBase request, @NotNull Params params)
@@ -75,51 +124,97 @@ public class RestUtil {
 		request.setEntity(entity);
 	}
 
-	private static <Req extends HttpUriRequest> boolean send(@NotNull Req request, @NotNull String token,
-															 String message, AsyncCallback callback) {
+	private static <T> CompletableFuture<T> failed(Throwable t) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(t);
+		return future;
+	}
+
+	private static <T> CompletableFuture<T> send(@NotNull HttpTransport transport, @NotNull HttpUriRequest request,
+												 @NotNull String token, String message, ResponseHandler<T> handler,
+												 boolean modal) {
 		request.addHeader("PRIVATE-TOKEN", token);
 		request.addHeader("Accept-Charset", "utf-8");
-		RestTask<Req> task = new RestTask(request, message, callback);
-		ProgressManager.getInstance().run(task);
-		if (task.exception != null) {
-			if (!(task.exception instanceof ProcessCanceledException)) {
-				Messages.showErrorDialog((Project) null, task.exception.getMessage(), "Connection error");
+		// issue pages consist of lots of text which compresses very well
+		request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+
+		// the user waits in front of a modal dialog, so report a failure right away instead of retrying
+		RestTask<T> restTask = new RestTask<>(transport, request, message, handler, modal ? 1 : MAX_ATTEMPTS);
+		if (modal) {
+			ProgressManager.getInstance().run(new Task.Modal(null, TITLE, true) {
+				@Override
+				public void run(@NotNull ProgressIndicator indicator) {
+					restTask.run(indicator);
+				}
+
+				@Override
+				public void onCancel() {
+					restTask.abort();
+				}
+			});
+		} else {
+			Task task = new Task.Backgroundable(null, TITLE, true) {
+				@Override
+				public void run(@NotNull ProgressIndicator indicator) {
+					restTask.run(indicator);
+				}
+
+				@Override
+				public void onCancel() {
+					restTask.abort();
+				}
+			};
+			// background tasks have to be started from the event dispatch thread, but must not wait for modal dialogs
+			// to be closed
+			if (ApplicationManager.getApplication().isDispatchThread()) {
+				ProgressManager.getInstance().run(task);
+			} else {
+				ApplicationManager.getApplication().invokeLater(() -> ProgressManager.getInstance().run(task),
+						ModalityState.any());
 			}
-			return false;
 		}
-		return true;
-	}
 
-	private static HttpClient newClient() {
-		RequestConfig config = RequestConfig.custom()
-				.setConnectTimeout(TIMEOUT)
-				.setSocketTimeout(TIMEOUT)
-				.setConnectionRequestTimeout(TIMEOUT)
-				.build();
-		HttpClientBuilder builder = HttpClients.custom()
-				.setSslcontext(CertificatesManager.getInstance().getSslContext())
-				.setHostnameVerifier((X509HostnameVerifier) CertificatesManager.HOSTNAME_VERIFIER)
-				.setDefaultRequestConfig(config);
-		return builder.build();
+		return restTask.result.whenComplete((result, t) -> {
+			if (t != null) {
+				reportError(t, modal);
+			}
+		});
 	}
 
+	private static void reportError(Throwable t, boolean modal) {
+		Throwable cause = t.getCause() != null ? t.getCause() : t;
+		if (cause instanceof CancellationException || cause instanceof ProcessCanceledException)
+			return;
+		// the server has been reported unreachable already, so do not repeat that for every background request
+		if (cause instanceof CircuitBreaker.OpenException && !modal)
+			return;
+		if (modal) {
+			Messages.showErrorDialog((Project) null, cause.getMessage(), "Connection error");
+		} else {
+			Notifications.Bus.notify(new Notification(NOTIFICATION_GROUP, "Connection error",
+					String.valueOf(cause.getMessage()), NotificationType.ERROR));
+		}
+	}
 
-	private static class RestTask<Req extends HttpUriRequest> extends Task.Modal {
+	private static class RestTask<T> {
 
-		private final Req request;
+		private final HttpTransport transport;
+		private final HttpUriRequest request;
 		private final String message;
-		private final AsyncCallback callback;
+		private final ResponseHandler<T> handler;
+		private final int maxAttempts;
 
-		Exception exception;
+		final CompletableFuture<T> result = new CompletableFuture<>();
 
-		public RestTask(@NotNull Req request, String message, AsyncCallback callback) {
-			super(null, "Contacting GitLab server", true);
+		public RestTask(@NotNull HttpTransport transport, @NotNull HttpUriRequest request, String message,
+						ResponseHandler<T> handler, int maxAttempts) {
+			this.transport = transport;
 			this.request = request;
 			this.message = message;
-			this.callback = callback;
+			this.handler = handler;
+			this.maxAttempts = maxAttempts;
 		}
 
-		@Override
 		public void run(@NotNull ProgressIndicator indicator) {
 			if (message != null) {
 				indicator.setText(message);
@@ -127,50 +222,146 @@ public class RestUtil {
 			indicator.setFraction(0);
 			indicator.setIndeterminate(true);
 
-			HttpClient client = newClient();
 			try {
-				Future<Exception> future = ApplicationManager.getApplication().executeOnPooledThread(() -> {
-					try {
-						HttpResponse httpResponse = client.execute(request);
-						final StatusLine statusLine = httpResponse.getStatusLine();
-						if (statusLine.getStatusCode() >= 300) {
-							EntityUtils.consume(httpResponse.getEntity());
-							throw new HttpResponseException(statusLine.getStatusCode(), statusLine.getReasonPhrase());
-						}
-						String response = EntityUtils.toString(httpResponse.getEntity(), "utf-8");
-						if (callback != null) {
-							callback.onSuccess(response);
-						}
-					} catch (Exception ex) {
-						return ex;
-					}
-					return null;
-				});
+				// execute request on a separate thread, so it can be aborted as soon as the user cancels
+				Future<?> future = ApplicationManager.getApplication().executeOnPooledThread(this::execute);
 				while (true) {
 					try {
-						exception = future.get(100, TimeUnit.MILLISECONDS);
+						future.get(100, TimeUnit.MILLISECONDS);
 						return;
 					} catch (TimeoutException ignore) {
-						try {
-							indicator.checkCanceled();
-						} catch (ProcessCanceledException pce) {
-							exception = pce;
-							request.abort();
+						indicator.checkCanceled();
+					}
+				}
+			} catch (ProcessCanceledException pce) {
+				abort();
+			} catch (Exception e) {
+				result.completeExceptionally(e);
+			}
+		}
+
+		private void execute() {
+			RequestThrottle throttle = transport.getThrottle();
+			CircuitBreaker circuitBreaker = transport.getCircuitBreaker();
+			for (int attempt = 1; ; attempt++) {
+				boolean received = false;
+				try {
+					// fail fast instead of waiting for a server which is known to be unreachable
+					circuitBreaker.checkClosed();
+					throttle.acquire();
+					if (result.isDone())
+						return;
+					// closing the response hands the connection back to the pool of the shared transport
+					try (CloseableHttpResponse httpResponse = transport.getClient().execute(request)) {
+						received = true;
+						circuitBreaker.succeeded();
+						throttle.update(httpResponse);
+						final StatusLine statusLine = httpResponse.getStatusLine();
+						int status = statusLine.getStatusCode();
+						RestResponse response = new RestResponse(httpResponse);
+						if (status >= 300 && status != HttpStatus.SC_NOT_MODIFIED) {
+							finish(response);
+							if (attempt >= maxAttempts || !isRetryable(status))
+								throw new HttpResponseException(status, statusLine.getReasonPhrase());
+						} else {
+							T value = null;
+							if (handler != null) {
+								// the handler reads the body straight from the connection
+								value = handler.handle(response);
+							}
+							finish(response);
+							result.complete(value);
 							return;
 						}
-					} catch (Exception e) {
-						exception = e;
+					}
+				} catch (CircuitBreaker.OpenException ex) {
+					result.completeExceptionally(ex);
+					return;
+				} catch (IOException ex) {
+					// every attempt counts, so the breaker opens before the retries of a few requests have run out
+					if (!received && !result.isDone() && isConnectionFailure(ex)) {
+						circuitBreaker.failed();
+					}
+					// only repeat requests which timed out, not those whose response could not be processed or whose
+					// server cannot be reached at all
+					if (received || isUnreachable(ex) || attempt >= maxAttempts || !isIdempotent() ||
+							result.isDone()) {
+						result.completeExceptionally(ex);
 						return;
 					}
+				} catch (Exception ex) {
+					result.completeExceptionally(ex);
+					return;
+				}
+
+				throttle.retried();
+				try {
+					Thread.sleep(retryDelay(attempt));
+				} catch (InterruptedException e) {
+					result.completeExceptionally(new CancellationException());
+					return;
+				}
+				if (request instanceof HttpRequestBase) {
+					((HttpRequestBase) request).reset();
 				}
-			} catch (Exception e) {
-				this.exception = e;
 			}
 		}
 
-		@Override
-		public void onCancel() {
+		/**
+		 * @return whether the server could not be reached, as opposed to e.g. no pooled connection being available in
+		 * time
+		 */
+		private static boolean isConnectionFailure(IOException ex) {
+			return isUnreachable(ex) || ex instanceof SocketTimeoutException;
+		}
+
+		/**
+		 * @return whether no connection to the server could be established, which a retry a moment later would not
+		 * change
+		 */
+		private static boolean isUnreachable(IOException ex) {
+			// a subclass of ConnectTimeoutException, but caused by too many requests of our own
+			if (ex instanceof ConnectionPoolTimeoutException)
+				return false;
+			return ex instanceof ConnectException || ex instanceof ConnectTimeoutException ||
+					ex instanceof NoRouteToHostException || ex instanceof UnknownHostException;
+		}
+
+		private void finish(RestResponse response) throws IOException {
+			try {
+				// drain whatever has not been read, so the connection can be reused
+				response.finish();
+			} finally {
+				long transferred = response.getTransferredBytes();
+				long decoded = response.getDecodedBytes();
+				transport.recordTransfer(transferred, decoded);
+				if (LOG.isDebugEnabled()) {
+					LOG.debug(request.getMethod() + " " + request.getURI() + ": " + transferred + " bytes received, " +
+							decoded + " bytes decoded");
+				}
+			}
+		}
+
+		private boolean isRetryable(int status) {
+			// a rate limited request has not been processed at all
+			return status == RequestThrottle.TOO_MANY_REQUESTS || status >= 500 && isIdempotent();
+		}
+
+		private boolean isIdempotent() {
+			return !HttpPost.METHOD_NAME.equals(request.getMethod());
+		}
+
+		/**
+		 * @return exponentially growing delay with jitter, so failed requests do not come back all at once
+		 */
+		private long retryDelay(int attempt) {
+			long delay = RETRY_DELAY << (attempt - 1);
+			return ThreadLocalRandom.current().nextLong(delay / 2, delay + 1);
+		}
+
+		public void abort() {
 			request.abort();
+			result.completeExceptionally(new CancellationException());
 		}
 	}
 }
@@ -0,0 +1,173 @@
+package eu.broth.intellilab.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Embedded HTTP server which receives the issue events of GitLab web hooks, so issues do not have to be polled.
+ * <p>
+ * Receivers are shared by all clients listening on the same address and reference counted like
+ * {@link HttpTransport}: every {@link #acquire(String, int, String, IssueHookListener)} has to be balanced by a
+ * {@link #release(IssueHookListener)}. Events are only accepted along with the secret token of a listener.
+ *
+ * @version 17.10.2026
+ */
+public class WebhookReceiver {
+
+	private static final String EVENT_HEADER = "X-Gitlab-Event";
+	private static final String TOKEN_HEADER = "X-Gitlab-Token";
+	private static final String ISSUE_EVENT = "Issue Hook";
+
+	private static final Map<InetSocketAddress, WebhookReceiver> RECEIVERS = new HashMap<>();
+
+	/**
+	 * Notified about issues which have been created or changed on the server.
+	 */
+	@FunctionalInterface
+	public static interface IssueHookListener {
+		void issueChanged(int projectId, int issueId);
+	}
+
+	/**
+	 * Starts listening on the given address and port unless a receiver is running there already.
+	 *
+	 * @param host     the host name or address of the interface to listen on
+	 * @param secret   the token GitLab sends along with the events of this listener
+	 * @param listener notified on the receiver's thread, so it must return quickly
+	 * @throws IOException if the secret is missing or the port cannot be bound
+	 */
+	public static synchronized WebhookReceiver acquire(@NotNull String host, int port, @NotNull String secret,
+													   @NotNull IssueHookListener listener) throws IOException {
+		// anyone able to reach the port could make the IDE contact the server otherwise
+		if (secret.isEmpty())
+			throw new IOException("no secret token has been set");
+		InetSocketAddress address = new InetSocketAddress(host, port);
+		if (address.isUnresolved())
+			throw new IOException("unknown host " + host);
+		WebhookReceiver receiver = RECEIVERS.get(address);
+		if (receiver == null) {
+			receiver = new WebhookReceiver(address);
+			RECEIVERS.put(address, receiver);
+		}
+		receiver.registrations.add(new Registration(secret, listener));
+		return receiver;
+	}
+
+
+	private final InetSocketAddress address;
+	private final HttpServer server;
+	private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+	private WebhookReceiver(InetSocketAddress address) throws IOException {
+		this.address = address;
+		server = HttpServer.create(address, 0);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	/**
+	 * Removes the listener. The server is stopped after the last listener has been removed.
+	 */
+	public void release(IssueHookListener listener) {
+		synchronized (WebhookReceiver.class) {
+			registrations.removeIf(registration -> registration.listener == listener);
+			if (!registrations.isEmpty())
+				return;
+			RECEIVERS.remove(address);
+		}
+		server.stop(0);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				respond(exchange, HttpURLConnection.HTTP_BAD_METHOD);
+				return;
+			}
+			String token = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+			List<Registration> accepted = token == null ? Collections.emptyList() : registrations.stream()
+					.filter(registration -> registration.accepts(token))
+					.collect(Collectors.toList());
+			if (accepted.isEmpty()) {
+				respond(exchange, HttpURLConnection.HTTP_UNAUTHORIZED);
+				return;
+			}
+			// other events are acknowledged, but not of interest
+			if (ISSUE_EVENT.equals(exchange.getRequestHeaders().getFirst(EVENT_HEADER))) {
+				JsonElement event;
+				try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+					event = new JsonParser().parse(reader);
+				}
+				JsonElement attributes = event.isJsonObject()
+						? event.getAsJsonObject().get("object_attributes") : null;
+				Integer projectId = getInt(attributes, "project_id");
+				Integer issueId = getInt(attributes, "id");
+				if (projectId == null || issueId == null) {
+					respond(exchange, HttpURLConnection.HTTP_BAD_REQUEST);
+					return;
+				}
+				accepted.forEach(registration -> registration.listener.issueChanged(projectId, issueId));
+			}
+			respond(exchange, HttpURLConnection.HTTP_OK);
+		} catch (JsonParseException e) {
+			respond(exchange, HttpURLConnection.HTTP_BAD_REQUEST);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * @return the number of the given name if the element is an object which has one, otherwise null
+	 */
+	@Nullable
+	private static Integer getInt(@Nullable JsonElement element, String name) {
+		if (element == null || !element.isJsonObject())
+			return null;
+		JsonElement value = ((JsonObject) element).get(name);
+		if (value == null || !value.isJsonPrimitive() || !((JsonPrimitive) value).isNumber())
+			return null;
+		return value.getAsInt();
+	}
+
+	private static void respond(HttpExchange exchange, int status) throws IOException {
+		exchange.sendResponseHeaders(status, -1);
+	}
+
+
+	private static class Registration {
+		final String secret;
+		final IssueHookListener listener;
+
+		Registration(String secret, IssueHookListener listener) {
+			this.secret = secret;
+			this.listener = listener;
+		}
+
+		boolean accepts(String token) {
+			// compared in constant time, so the secret cannot be guessed from response times
+			return MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+					token.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,23 @@
+#!/bin/sh
+# Sends a recorded GitLab issue event to a running IDE, standing in for a GitLab server which cannot reach it.
+#
+# Usage: post-issue-hook.sh <token> [url] [payload]
+#
+# The token is the web hook token configured in the IDE. Adjust "project_id" and "id" of the payload to an existing
+# issue of the linked project, otherwise the event is accepted but ignored.
+
+if [ -z "$1" ]; then
+	echo "Usage: $0 <token> [url] [payload]" >&2
+	exit 2
+fi
+
+TOKEN=$1
+URL=${2:-http://127.0.0.1:8765/}
+PAYLOAD=${3:-$(dirname "$0")/issue-hook.json}
+
+curl --silent --show-error --output /dev/null --write-out "%{http_code}\n" \
+	--header "Content-Type: application/json" \
+	--header "X-Gitlab-Event: Issue Hook" \
+	--header "X-Gitlab-Token: $TOKEN" \
+	--data-binary "@$PAYLOAD" \
+	"$URL"